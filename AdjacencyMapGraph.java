@@ -1,5 +1,7 @@
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 
@@ -8,6 +10,8 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E>{
     private boolean directed;  // indicates whether the graph is directed
     private LinkedPositionalList<Vertex<V>> vertices = new LinkedPositionalList<>();
     private LinkedPositionalList<Edge<E>> edges = new LinkedPositionalList<>();
+    private List<ElementIndex<V, Vertex<V>>> vertexIndexes = new ArrayList<>();
+    private List<ElementIndex<E, Edge<E>>> edgeIndexes = new ArrayList<>();
 
     /**
      * Constructs an empty graph.
@@ -95,27 +99,38 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E>{
             throw new IllegalArgumentException("v is not incident to this edge");
     }
 
-    /** Inserts and returns a new vertex with the given element. */
-    public Vertex<V> insertVertex(V element) {
+    /**
+     * Inserts and returns a new vertex with the given element.
+     * @throws IllegalArgumentException if a unique vertex index already holds the element's key
+     */
+    public Vertex<V> insertVertex(V element) throws IllegalArgumentException {
+        Object[] keys = keys(vertexIndexes, element, true);  // before anything changes
         InnerVertex<V> v = new InnerVertex<>(element, directed);
         v.setPosition(vertices.addLast(v));
+        for (int i = 0; i < keys.length; i++)
+            vertexIndexes.get(i).add(keys[i], v);
         return v;
     }
 
     /**
      * Inserts and returns a new edge between vertices u and v, storing given element.
      *
-     * @throws IllegalArgumentException if u or v are invalid vertices, or if an edge already exists between u and v.
+     * @throws IllegalArgumentException if u or v are invalid vertices, if an edge already exists between u and v,
+     *                                  or if a unique edge index already holds the element's key.
      */
     public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element)
                                     throws IllegalArgumentException {
         if (getEdge(u,v) == null) {
+            validate(v);
+            Object[] keys = keys(edgeIndexes, element, true);  // before anything changes
             InnerEdge<E> e = new InnerEdge<>(u, v, element);
             e.setPosition(edges.addLast(e));
             InnerVertex<V> origin = validate(u);
             InnerVertex<V> dest = validate(v);
             origin.getOutgoing().put(v, e);
             dest.getIncoming().put(u, e);
+            for (int i = 0; i < keys.length; i++)
+                edgeIndexes.get(i).add(keys[i], e);
             return e;
         }
         else
@@ -125,10 +140,11 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E>{
     /** Removes a vertex and all its incident edges from the graph. */
     public void removeVertex(Vertex<V> v) throws IllegalArgumentException {
         InnerVertex<V> vert = validate(v);
-        // remove all incident edges from the graph
-        for (Edge<E> e : vert.getOutgoing().values())
+        Object[] keys = keys(vertexIndexes, vert.getElement(), false);
+        // remove all incident edges from the graph (copied, since removeEdge modifies the maps)
+        for (Edge<E> e : new ArrayList<>(vert.getOutgoing().values()))
             removeEdge(e);
-        for (Edge<E> e : vert.getIncoming().values())
+        for (Edge<E> e : new ArrayList<>(vert.getIncoming().values()))
             removeEdge(e);
         // remove this vertex from the list of vertices
         try {
@@ -138,16 +154,19 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E>{
         {
             System.out.println(e.getMessage());
         }
+        for (int i = 0; i < keys.length; i++)
+            vertexIndexes.get(i).remove(keys[i], vert);
         vert.setPosition(null);             // invalidates the vertex
     }
 
     /** Removes an edge from the graph. */
     public void removeEdge(Edge<E> e) throws IllegalArgumentException {
         InnerEdge<E> edge = validate(e);
+        Object[] keys = keys(edgeIndexes, edge.getElement(), false);
         // remove this edge from vertices' adjacencies
-        InnerVertex<V>[] verts = (InnerVertex<V>[]) edge.getEndpoints();
-        verts[0].getOutgoing().remove(verts[1]);
-        verts[1].getIncoming().remove(verts[0]);
+        Vertex<V>[] verts = edge.getEndpoints();
+        validate(verts[0]).getOutgoing().remove(verts[1]);
+        validate(verts[1]).getIncoming().remove(verts[0]);
         // remove this edge from the list of edges
         try {
             edges.remove(edge.getPosition());
@@ -156,9 +175,77 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E>{
         {
             System.out.println(ex.getMessage());
         }
+        for (int i = 0; i < keys.length; i++)
+            edgeIndexes.get(i).remove(keys[i], edge);
         edge.setPosition(null);             // invalidates the edge
     }
 
+    /**
+     * Registers an index on the vertex elements, fills it with the current vertices and keeps it
+     * up to date from then on. Returns the index, for lookups.
+     * @throws IllegalArgumentException if the index is unique and two vertices share a key, in
+     *                                  which case the index is left empty and not registered
+     */
+    public <I extends ElementIndex<V, Vertex<V>>> I addVertexIndex(I index) throws IllegalArgumentException {
+        index.clear();
+        try {
+            for (Vertex<V> v : vertices) {
+                Object key = index.key(v.getElement());
+                index.checkInsert(key);
+                index.add(key, v);
+            }
+        } catch (RuntimeException ex) {
+            index.clear();
+            throw ex;
+        }
+        vertexIndexes.add(index);
+        return index;
+    }
+
+    /**
+     * Registers an index on the edge elements, fills it with the current edges and keeps it
+     * up to date from then on. Returns the index, for lookups.
+     * @throws IllegalArgumentException if the index is unique and two edges share a key, in
+     *                                  which case the index is left empty and not registered
+     */
+    public <I extends ElementIndex<E, Edge<E>>> I addEdgeIndex(I index) throws IllegalArgumentException {
+        index.clear();
+        try {
+            for (Edge<E> e : edges) {
+                Object key = index.key(e.getElement());
+                index.checkInsert(key);
+                index.add(key, e);
+            }
+        } catch (RuntimeException ex) {
+            index.clear();
+            throw ex;
+        }
+        edgeIndexes.add(index);
+        return index;
+    }
+
+    /** Stops maintaining a vertex index; returns whether it was registered. */
+    public boolean removeVertexIndex(ElementIndex<V, Vertex<V>> index) { return vertexIndexes.remove(index); }
+
+    /** Stops maintaining an edge index; returns whether it was registered. */
+    public boolean removeEdgeIndex(ElementIndex<E, Edge<E>> index) { return edgeIndexes.remove(index); }
+
+    /**
+     * Derives the key of an element for each of the indexes, checking for an insertion that
+     * each can be added.
+     * @throws IllegalArgumentException if inserting and a unique index already holds its key
+     */
+    private static <T, H> Object[] keys(List<ElementIndex<T, H>> indexes, T element, boolean inserting)
+            throws IllegalArgumentException {
+        Object[] keys = new Object[indexes.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = indexes.get(i).key(element);
+            if (inserting)
+                indexes.get(i).checkInsert(keys[i]);
+        }
+        return keys;
+    }
+
     private InnerVertex<V> validate(Vertex<V> v) {
         if (!(v instanceof InnerVertex)) throw new IllegalArgumentException("Invalid vertex");
         InnerVertex<V> vert = (InnerVertex<V>) v;     // safe cast
@@ -288,6 +375,22 @@ public class AdjacencyMapGraph<V, E> implements Graph<V, E>{
         Edge<String> f = graph.insertEdge(v, w, "f");
         Edge<String> h = graph.insertEdge(w, z, "h");
         System.out.println(graph);
+
+        // a unique index on the vertex names, and a non-unique one on the first letter of edge labels
+        HashIndex<String, String, Vertex<String>> byName =
+                graph.addVertexIndex(new HashIndex<>(s -> s, true));
+        LongHashIndex<String, Edge<String>> byLetter =
+                graph.addEdgeIndex(new LongHashIndex<>(s -> s.charAt(0), false));
+        graph.insertEdge(u, z, "e2");
+        System.out.println("findVertex(w) == w: " + (byName.find("w") == w));
+        System.out.println("edges labelled e*: " + byLetter.findAll('e').size());
+        try {
+            graph.insertVertex("u");
+        } catch (IllegalArgumentException ex) {
+            System.out.println("insertVertex(u): " + ex.getMessage());
+        }
+        graph.removeVertex(u);
+        System.out.println("after removing u: " + byName.find("u") + ", edges labelled e*: " + byLetter.findAll('e').size());
     }
 
 }
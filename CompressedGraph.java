@@ -0,0 +1,657 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only graph whose adjacency lists are stored compressed.
+ *
+ * Vertices are numbered 0..n-1. The list of each vertex holds its degree followed by its
+ * sorted neighbor numbers, the first one relative to the vertex itself and every later one as
+ * the gap to its predecessor; all of these are written as variable-length integers of seven
+ * bits per byte, in the style of WebGraph. The lists are concatenated in a paged byte store,
+ * and a two-level offset index gives random access to any of them, while iteration decodes them
+ * sequentially. Graphs with locality (see {@link VertexReordering}) need a few bytes per edge.
+ *
+ * Each vertex has a single handle, while edge handles are created on the fly and compare
+ * equal when they denote the same edge, so the algorithms of {@link GraphTraversal} run
+ * unchanged on this graph.
+ * Edge elements are optional; they are only kept when at least one of them is not null.
+ * Every mutator throws an UnsupportedOperationException.
+ */
+public class CompressedGraph<V,E> implements Graph<V,E> {
+
+    private final boolean directed;
+    private final int numVertices;
+    private final int numEdges;
+    private final Object[] vertexElements;       // null when every vertex element is null
+    private final Object[] edgeElements;         // by out-list position, null when all are null
+    private final long[] edgeBase;               // out-list position of each list, with edgeElements
+    private final ByteStore out;
+    private final ByteStore in;                  // same as out when undirected
+    private final Vertex<V>[] handles;           // one per vertex, as traversals compare them with ==
+
+    @SuppressWarnings({"unchecked"})
+    private CompressedGraph(boolean directed, int numVertices, int numEdges, Object[] vertexElements,
+                            Object[] edgeElements, long[] edgeBase, ByteStore out, ByteStore in) {
+        this.directed = directed;
+        this.numVertices = numVertices;
+        this.numEdges = numEdges;
+        this.vertexElements = vertexElements;
+        this.edgeElements = edgeElements;
+        this.edgeBase = edgeBase;
+        this.out = out;
+        this.in = in;
+        handles = (Vertex<V>[]) new Vertex[numVertices];
+        for (int i = 0; i < numVertices; i++)
+            handles[i] = new CompressedVertex(i);
+    }
+
+    /**
+     * Returns a compressed copy of Graph g. Vertices are numbered in the iteration order of
+     * {@code g.vertices()}; reorder g first for a better compression ratio.
+     *
+     * @param g Graph instance
+     * @param directed whether g is a directed graph
+     */
+    public static <V,E> CompressedGraph<V,E> copyOf(Graph<V,E> g, boolean directed) {
+        Builder<V,E> builder = new Builder<>(directed);
+        Map<Vertex<V>, Integer> index = new HashMap<>(2 * g.numVertices());
+        for (Vertex<V> v : g.vertices())
+            index.put(v, builder.addVertex(v.getElement()));
+        for (Edge<E> e : g.edges()) {
+            Vertex<V>[] ends = g.endVertices(e);
+            builder.addEdge(index.get(ends[0]), index.get(ends[1]), e.getElement());
+        }
+        return builder.build();
+    }
+
+    /** Returns the number of vertices of the graph */
+    public int numVertices() { return numVertices; }
+
+    /** Returns the number of edges of the graph */
+    public int numEdges() { return numEdges; }
+
+    /** Returns the vertices of the graph as an iterable collection */
+    public Iterable<Vertex<V>> vertices() {
+        return () -> new Iterator<Vertex<V>>() {
+            private int next = 0;
+            public boolean hasNext() { return next < numVertices; }
+            public Vertex<V> next() {
+                if (next >= numVertices) throw new NoSuchElementException();
+                return handles[next++];
+            }
+        };
+    }
+
+    /** Returns the edges of the graph as an iterable collection */
+    public Iterable<Edge<E>> edges() {
+        return () -> new Iterator<Edge<E>>() {
+            private int vertex = -1;
+            private ListIterator list = null;
+            private CompressedEdge pending = advance();
+
+            private CompressedEdge advance() {
+                while (true) {
+                    while (list != null && list.hasNext()) {
+                        CompressedEdge e = list.nextEdge();
+                        if (directed || e.target >= e.source)   // undirected edges are listed twice
+                            return e;
+                    }
+                    if (++vertex >= numVertices)
+                        return null;
+                    list = new ListIterator(vertex, true);
+                }
+            }
+
+            public boolean hasNext() { return pending != null; }
+            public Edge<E> next() {
+                if (pending == null) throw new NoSuchElementException();
+                CompressedEdge e = pending;
+                pending = advance();
+                return e;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of edges for which vertex v is the origin.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public int outDegree(Vertex<V> v) throws IllegalArgumentException {
+        return (int) out.readVarLong(new long[]{out.listOffset(validate(v))});
+    }
+
+    /**
+     * Returns the number of edges for which vertex v is the destination.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public int inDegree(Vertex<V> v) throws IllegalArgumentException {
+        return (int) in.readVarLong(new long[]{in.listOffset(validate(v))});
+    }
+
+    /**
+     * Returns an iterable collection of edges for which vertex v is the origin.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public Iterable<Edge<E>> outgoingEdges(Vertex<V> v) throws IllegalArgumentException {
+        int id = validate(v);
+        return () -> new ListIterator(id, true);
+    }
+
+    /**
+     * Returns an iterable collection of edges for which vertex v is the destination.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public Iterable<Edge<E>> incomingEdges(Vertex<V> v) throws IllegalArgumentException {
+        int id = validate(v);
+        return () -> new ListIterator(id, !directed);
+    }
+
+    /** Returns the edge from u to v, or null if they are not adjacent. */
+    public Edge<E> getEdge(Vertex<V> u, Vertex<V> v) throws IllegalArgumentException {
+        int target = validate(v);
+        ListIterator it = new ListIterator(validate(u), true);
+        while (it.hasNext()) {
+            CompressedEdge e = it.nextEdge();
+            if (e.target >= target)                // lists are sorted, stop at the first larger one
+                return e.target == target ? e : null;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the vertices of edge e as an array of length two.
+     * If the graph is directed, the first vertex is the origin, and
+     * the second is the destination.
+     */
+    @SuppressWarnings({"unchecked"})
+    public Vertex<V>[] endVertices(Edge<E> e) throws IllegalArgumentException {
+        CompressedEdge edge = validate(e);
+        return (Vertex<V>[]) new Vertex[]{handles[edge.source], handles[edge.target]};
+    }
+
+    /** Returns the vertex that is opposite vertex v on edge e. */
+    public Vertex<V> opposite(Vertex<V> v, Edge<E> e) throws IllegalArgumentException {
+        CompressedEdge edge = validate(e);
+        int id = validate(v);
+        if (edge.source == id)
+            return handles[edge.target];
+        else if (edge.target == id)
+            return handles[edge.source];
+        else
+            throw new IllegalArgumentException("v is not incident to this edge");
+    }
+
+    /** Unsupported, the graph is read-only. */
+    public Vertex<V> insertVertex(V element) {
+        throw new UnsupportedOperationException("CompressedGraph is read-only");
+    }
+
+    /** Unsupported, the graph is read-only. */
+    public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("CompressedGraph is read-only");
+    }
+
+    /** Unsupported, the graph is read-only. */
+    public void removeVertex(Vertex<V> v) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("CompressedGraph is read-only");
+    }
+
+    /** Unsupported, the graph is read-only. */
+    public void removeEdge(Edge<E> e) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("CompressedGraph is read-only");
+    }
+
+    /** Returns the vertex with number id. */
+    public Vertex<V> vertex(int id) throws IllegalArgumentException {
+        if (id < 0 || id >= numVertices) throw new IllegalArgumentException("Invalid vertex number");
+        return handles[id];
+    }
+
+    /**
+     * Returns the number of vertex v.
+     * @throws IllegalArgumentException if v is not a vertex of this graph
+     */
+    public int id(Vertex<V> v) throws IllegalArgumentException { return validate(v); }
+
+    /** Returns the number of bytes used by the compressed adjacency lists and their offsets. */
+    public long adjacencyBytes() {
+        long bytes = out.sizeWithIndex();
+        if (in != out)
+            bytes += in.sizeWithIndex();
+        return bytes;
+    }
+
+    /** Returns the mean number of adjacency bytes per edge. */
+    public double bytesPerEdge() { return numEdges == 0 ? 0.0 : (double) adjacencyBytes() / numEdges; }
+
+    private int validate(Vertex<V> v) {
+        if (!(v instanceof CompressedGraph.CompressedVertex)) throw new IllegalArgumentException("Invalid vertex");
+        CompressedVertex vert = (CompressedVertex) v;
+        if (vert.owner() != this) throw new IllegalArgumentException("Invalid vertex");
+        return vert.id;
+    }
+
+    private CompressedEdge validate(Edge<E> e) {
+        if (!(e instanceof CompressedGraph.CompressedEdge)) throw new IllegalArgumentException("Invalid edge");
+        CompressedEdge edge = (CompressedEdge) e;
+        if (edge.owner() != this) throw new IllegalArgumentException("Invalid edge");
+        return edge;
+    }
+
+    /** Returns the out-list position of the edge from source to target, by decoding the list of source. */
+    private long position(int source, int target) {
+        ListIterator it = new ListIterator(source, true);
+        while (it.hasNext()) {
+            CompressedEdge e = it.nextEdge();
+            if (e.target == target)
+                return e.position;
+        }
+        throw new IllegalStateException("edge not found in the list of its source");
+    }
+
+    //---------------- nested ListIterator class ----------------
+    /** Decodes one adjacency list sequentially into edges. */
+    private class ListIterator implements Iterator<Edge<E>> {
+        private final int vertex;
+        private final boolean outgoing;
+        private final ByteStore store;
+        private final long[] cursor = new long[1];
+        private final int degree;
+        private int read = 0;
+        private int previous;
+
+        public ListIterator(int vertex, boolean outgoing) {
+            this.vertex = vertex;
+            this.outgoing = outgoing;
+            store = outgoing ? out : in;
+            cursor[0] = store.listOffset(vertex);
+            degree = (int) store.readVarLong(cursor);
+        }
+
+        public boolean hasNext() { return read < degree; }
+
+        public Edge<E> next() { return nextEdge(); }
+
+        public CompressedEdge nextEdge() {
+            if (read >= degree) throw new NoSuchElementException();
+            long code = store.readVarLong(cursor);
+            if (read == 0)
+                previous = vertex + (int) ((code >>> 1) ^ -(code & 1));   // zigzag decoding
+            else
+                previous += (int) code + 1;
+            long position = outgoing && edgeBase != null ? edgeBase[vertex] + read : -1;
+            read++;
+            return outgoing ? new CompressedEdge(vertex, previous, position)
+                            : new CompressedEdge(previous, vertex, -1);
+        }
+    }  //------------ end of ListIterator class ------------
+
+
+    //---------------- nested CompressedVertex class ----------------
+    /** A handle on a vertex number of this graph. */
+    private class CompressedVertex implements Vertex<V> {
+        private final int id;
+
+        public CompressedVertex(int id) { this.id = id; }
+
+        /** Returns the element associated with the vertex. */
+        @SuppressWarnings({"unchecked"})
+        public V getElement() { return vertexElements == null ? null : (V) vertexElements[id]; }
+
+        private CompressedGraph<V,E> owner() { return CompressedGraph.this; }
+    }  //------------ end of CompressedVertex class ------------
+
+
+    //---------------- nested CompressedEdge class ----------------
+    /** A handle on an edge of this graph, identified by its endpoint numbers. */
+    private class CompressedEdge implements Edge<E> {
+        private final int source, target;
+        private long position;                   // in the out-lists, -1 until known
+
+        public CompressedEdge(int source, int target, long position) {
+            this.source = source;
+            this.target = target;
+            this.position = position;
+        }
+
+        /** Returns the element associated with the edge. */
+        @SuppressWarnings({"unchecked"})
+        public E getElement() {
+            if (edgeElements == null)
+                return null;
+            if (position < 0)
+                position = position(source, target);
+            return (E) edgeElements[(int) position];
+        }
+
+        private CompressedGraph<V,E> owner() { return CompressedGraph.this; }
+
+        /** Undirected edges are equal whichever of their endpoints they were reached from. */
+        public boolean equals(Object o) {
+            if (!(o instanceof CompressedGraph.CompressedEdge)) return false;
+            CompressedGraph<?,?>.CompressedEdge other = (CompressedGraph<?,?>.CompressedEdge) o;
+            if (owner() != other.owner()) return false;
+            return (source == other.source && target == other.target)
+                    || (!directed && source == other.target && target == other.source);
+        }
+
+        public int hashCode() {
+            int a = directed ? source : Math.min(source, target);
+            int b = directed ? target : Math.max(source, target);
+            return 31 * a + b;
+        }
+    }  //------------ end of CompressedEdge class ------------
+
+
+    //---------------- nested ByteStore class ----------------
+    /**
+     * An append-only sequence of bytes split over fixed size pages, addressed by long positions,
+     * together with the start offsets of the lists written into it. An offset is kept as a long
+     * for every 64 lists plus an unsigned int relative to it for every list.
+     */
+    private static class ByteStore {
+        private static final int PAGE_BITS = 26;   // 64 MiB pages
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+        private static final int PAGE_MASK = PAGE_SIZE - 1;
+        private static final int BLOCK_BITS = 6;
+
+        private long[] blockStart = new long[1];
+        private int[] relative = new int[64];
+        private int lists = 0;
+
+        private byte[][] pages = new byte[1][];
+        private byte[] page = new byte[1024];    // last page, grown until it is full
+        private long size = 0;
+
+        public ByteStore() {
+            pages[0] = page;
+        }
+
+        public long size() { return size; }
+
+        /** Returns the number of bytes of the store together with its offset index. */
+        public long sizeWithIndex() { return size + 8L * blockStart.length + 4L * relative.length; }
+
+        /** Records that the next list starts at the current end of the store. */
+        public void startList() {
+            int block = lists >>> BLOCK_BITS;
+            if (block == blockStart.length)
+                blockStart = Arrays.copyOf(blockStart, 2 * block);
+            if ((lists & ((1 << BLOCK_BITS) - 1)) == 0)
+                blockStart[block] = size;
+            long delta = size - blockStart[block];
+            if (delta > 0xFFFFFFFFL)
+                throw new IllegalStateException("64 consecutive lists exceed 4 GiB");
+            if (lists == relative.length)
+                relative = Arrays.copyOf(relative, 2 * lists);
+            relative[lists++] = (int) delta;
+        }
+
+        /** Returns the offset of the list with the given number. */
+        public long listOffset(int list) {
+            return blockStart[list >>> BLOCK_BITS] + (relative[list] & 0xFFFFFFFFL);
+        }
+
+        public void write(int b) {
+            int offset = (int) (size & PAGE_MASK);
+            if (offset == 0 && size > 0) {       // the last page is full, start a new one
+                int index = (int) (size >>> PAGE_BITS);
+                if (index == pages.length)
+                    pages = Arrays.copyOf(pages, 2 * pages.length);
+                page = new byte[1024];
+                pages[index] = page;
+            } else if (offset == page.length) {
+                page = Arrays.copyOf(page, Math.min(PAGE_SIZE, 2 * page.length));
+                pages[(int) (size >>> PAGE_BITS)] = page;
+            }
+            page[offset] = (byte) b;
+            size++;
+        }
+
+        /** Appends an unsigned variable-length integer, seven bits per byte, low bits first. */
+        public void writeVarLong(long x) {
+            while ((x & ~0x7FL) != 0) {
+                write((int) ((x & 0x7F) | 0x80));
+                x >>>= 7;
+            }
+            write((int) x);
+        }
+
+        /** Reads the variable-length integer at cursor[0] and moves the cursor past it. */
+        public long readVarLong(long[] cursor) {
+            long pos = cursor[0];
+            long x = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = pages[(int) (pos >>> PAGE_BITS)][(int) (pos & PAGE_MASK)];
+                pos++;
+                x |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            cursor[0] = pos;
+            return x;
+        }
+
+        /** Releases the unused tail of the last page and of the offset index. */
+        public void trim() {
+            blockStart = Arrays.copyOf(blockStart, (lists >>> BLOCK_BITS) + 1);
+            relative = Arrays.copyOf(relative, lists);
+            if (size == 0)
+                return;
+            int index = (int) ((size - 1) >>> PAGE_BITS);
+            int used = (int) (((size - 1) & PAGE_MASK) + 1);
+            if (page.length > used) {
+                page = Arrays.copyOf(page, used);
+                pages[index] = page;
+            }
+            pages = Arrays.copyOf(pages, index + 1);
+        }
+    }  //------------ end of ByteStore class ------------
+
+
+    //---------------- nested Builder class ----------------
+    /**
+     * Collects vertices and edges by vertex number and compresses them into a graph.
+     *
+     * Edges are buffered as pairs of endpoint numbers, and {@link #build()} lays out every
+     * adjacency entry in one int array before compressing it, so the entries, one per directed
+     * edge and two per undirected edge, must fit into a Java array: that allows up to about
+     * 2.1 billion directed or 1.07 billion undirected edges. At its peak a build holds 16 bytes
+     * per undirected edge or 12 per directed edge, or 36 and 24 with edge elements and compressed
+     * references, on top of the elements themselves and the compressed result. That is far less
+     * than an AdjacencyMapGraph of the same size, but it is not a bounded-memory stream.
+     */
+    public static class Builder<V,E> {
+
+        /** The largest array length the VM reliably allocates. */
+        private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+        private final boolean directed;
+        private Object[] vertexElements = new Object[16];
+        private boolean hasVertexElements = false;
+        private int numVertices = 0;
+        private int[] sources = new int[16], targets = new int[16];
+        private Object[] edgeElements = null;
+        private int numEdges = 0;
+        private long slots = 0;                  // adjacency entries the edges will take
+
+        /** Constructs a builder for a directed or an undirected graph. */
+        public Builder(boolean directed) {
+            this.directed = directed;
+        }
+
+        /**
+         * Adds a vertex storing the given element and returns its number.
+         * @throws IllegalStateException if the builder already holds the largest possible number of vertices
+         */
+        public int addVertex(V element) throws IllegalStateException {
+            if (numVertices == vertexElements.length)
+                vertexElements = Arrays.copyOf(vertexElements, grow(numVertices, "vertices"));
+            vertexElements[numVertices] = element;
+            hasVertexElements |= element != null;
+            return numVertices++;
+        }
+
+        /**
+         * Adds an edge from vertex number u to vertex number v, storing the given element.
+         * @throws IllegalArgumentException if u or v are not vertex numbers
+         * @throws IllegalStateException if the adjacency entries of the edge would exceed the capacity of the builder
+         */
+        public void addEdge(int u, int v, E element) throws IllegalArgumentException, IllegalStateException {
+            if (u < 0 || u >= numVertices || v < 0 || v >= numVertices)
+                throw new IllegalArgumentException("Invalid vertex number");
+            long entries = directed || u == v ? 1 : 2;
+            if (slots + entries > MAX_ARRAY)
+                throw new IllegalStateException("builder is full: at most " + MAX_ARRAY
+                        + " adjacency entries, one per directed and two per undirected edge");
+            if (numEdges == sources.length) {
+                int capacity = grow(numEdges, "edges");
+                sources = Arrays.copyOf(sources, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                if (edgeElements != null)
+                    edgeElements = Arrays.copyOf(edgeElements, capacity);
+            }
+            if (element != null && edgeElements == null)
+                edgeElements = new Object[sources.length];
+            sources[numEdges] = u;
+            targets[numEdges] = v;
+            if (edgeElements != null)
+                edgeElements[numEdges] = element;
+            numEdges++;
+            slots += entries;
+        }
+
+        /** Returns the length to grow a full array of the given length to, doubling it up to MAX_ARRAY. */
+        private static int grow(int length, String what) throws IllegalStateException {
+            if (length >= MAX_ARRAY)
+                throw new IllegalStateException("builder is full: at most " + MAX_ARRAY + " " + what);
+            return (int) Math.min(Math.max(2L * length, 16), MAX_ARRAY);
+        }
+
+        /**
+         * Compresses the vertices and edges added so far into a graph.
+         * @throws IllegalArgumentException if an edge between the same vertices was added twice
+         */
+        public CompressedGraph<V,E> build() throws IllegalArgumentException {
+            int n = numVertices;
+            // out-lists: every edge at its source, and at its target too when undirected
+            int[] degree = new int[n + 1];
+            for (int i = 0; i < numEdges; i++) {
+                degree[sources[i] + 1]++;
+                if (!directed && sources[i] != targets[i])
+                    degree[targets[i] + 1]++;
+            }
+            long[] base = new long[n + 1];
+            for (int v = 0; v < n; v++)
+                base[v + 1] = base[v] + degree[v + 1];
+            long slots = base[n];                      // at most MAX_ARRAY, as checked by addEdge
+            int[] nbr = new int[(int) slots];
+            int[] from = edgeElements == null ? null : new int[(int) slots];
+            long[] fill = Arrays.copyOf(base, n);
+            for (int i = 0; i < numEdges; i++) {
+                int s = sources[i], t = targets[i];
+                int k = (int) fill[s]++;
+                nbr[k] = t;
+                if (from != null) from[k] = i;
+                if (!directed && s != t) {
+                    k = (int) fill[t]++;
+                    nbr[k] = s;
+                    if (from != null) from[k] = i;
+                }
+            }
+            Object[] elements = null;
+            if (from != null) {
+                elements = new Object[(int) slots];
+                for (int v = 0; v < n; v++)
+                    sortWithPayload(nbr, from, (int) base[v], (int) base[v + 1]);
+                for (int k = 0; k < slots; k++)
+                    elements[k] = edgeElements[from[k]];
+            } else
+                for (int v = 0; v < n; v++)
+                    Arrays.sort(nbr, (int) base[v], (int) base[v + 1]);
+            ByteStore outStore = new ByteStore();
+            encode(nbr, base, outStore);
+
+            ByteStore inStore = outStore;
+            if (directed) {
+                int[] inDegree = new int[n + 1];
+                for (int i = 0; i < numEdges; i++)
+                    inDegree[targets[i] + 1]++;
+                long[] inBase = new long[n + 1];
+                for (int v = 0; v < n; v++)
+                    inBase[v + 1] = inBase[v] + inDegree[v + 1];
+                long[] inFill = Arrays.copyOf(inBase, n);
+                for (int i = 0; i < numEdges; i++)
+                    nbr[(int) inFill[targets[i]]++] = sources[i];
+                for (int v = 0; v < n; v++)
+                    Arrays.sort(nbr, (int) inBase[v], (int) inBase[v + 1]);
+                inStore = new ByteStore();
+                encode(nbr, inBase, inStore);
+            }
+            return new CompressedGraph<>(directed, n, numEdges,
+                    hasVertexElements ? Arrays.copyOf(vertexElements, n) : null,
+                    elements, elements == null ? null : base, outStore, inStore);
+        }
+
+        /** Writes the sorted lists nbr[base[v] .. base[v+1]) of every vertex v into the store. */
+        private void encode(int[] nbr, long[] base, ByteStore store) {
+            int n = base.length - 1;
+            for (int v = 0; v < n; v++) {
+                store.startList();
+                int lo = (int) base[v], hi = (int) base[v + 1];
+                store.writeVarLong(hi - lo);
+                for (int k = lo; k < hi; k++) {
+                    if (k == lo) {
+                        long d = (long) nbr[k] - v;
+                        store.writeVarLong((d << 1) ^ (d >> 63));   // zigzag encoding
+                    } else {
+                        if (nbr[k] == nbr[k - 1])
+                            throw new IllegalArgumentException("Edge from u to v exists");
+                        store.writeVarLong(nbr[k] - nbr[k - 1] - 1);
+                    }
+                }
+            }
+            store.trim();
+        }
+
+        /** Sorts keys[lo..hi) and applies the same permutation to payload[lo..hi). */
+        private static void sortWithPayload(int[] keys, int[] payload, int lo, int hi) {
+            long[] packed = new long[hi - lo];
+            for (int k = lo; k < hi; k++)
+                packed[k - lo] = ((long) keys[k] << 32) | (payload[k] & 0xFFFFFFFFL);
+            Arrays.sort(packed);
+            for (int k = lo; k < hi; k++) {
+                keys[k] = (int) (packed[k - lo] >>> 32);
+                payload[k] = (int) packed[k - lo];
+            }
+        }
+    }  //------------ end of Builder class ------------
+
+
+    /** a main method to demonstrate the compressed graph */
+    public static void main(String[] args) {
+        AdjacencyMapGraph<String, String> graph =
+                new AdjacencyMapGraph<>(false);
+        Vertex<String> u = graph.insertVertex("u");
+        Vertex<String> v = graph.insertVertex("v");
+        Vertex<String> w = graph.insertVertex("w");
+        Vertex<String> z = graph.insertVertex("z");
+        graph.insertEdge(u, v, "e");
+        graph.insertEdge(u, w, "g");
+        graph.insertEdge(v, w, "f");
+        graph.insertEdge(w, z, "h");
+        CompressedGraph<String, String> compressed = copyOf(graph, false);
+        Vertex<String> cu = compressed.vertex(0);
+        Vertex<String> cz = compressed.vertex(3);
+        System.out.println("path from u to z:");
+        for (Edge<String> k : GraphTraversal.path(compressed, cu, cz))
+            System.out.println(k.getElement());
+        System.out.println(compressed.adjacencyBytes() + " bytes, "
+                + compressed.bytesPerEdge() + " bytes per edge");
+    }
+
+}
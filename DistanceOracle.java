@@ -0,0 +1,544 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * An oracle estimating hop distances between vertices from a few precomputed landmarks.
+ *
+ * A small number of landmark vertices is chosen, and a BFS from each of them records its
+ * distance to every vertex (and, in a directed graph, a BFS over reversed edges the distance
+ * from every vertex to it). The searches run in parallel; their results are packed into one
+ * table per direction holding the distances of a vertex to all landmarks consecutively, as
+ * shorts when every distance fits and as ints otherwise.
+ *
+ * By the triangle inequality, d(u,L) + d(L,v) bounds d(u,v) from above for every landmark L,
+ * and |d(L,u) - d(L,v)| bounds it from below. The upper bound is the estimate; it is exact
+ * whenever some landmark lies on a shortest path. When an exact answer is needed, an A* search
+ * using the lower bounds as its heuristic (the ALT algorithm) settles far fewer vertices than
+ * a BFS would, and stops at once when the two bounds meet.
+ *
+ * The oracle works on a snapshot of the graph taken when it was built; modifying the graph
+ * requires a {@link #rebuild()}. Like the graphs it indexes, an oracle is not safe for
+ * concurrent use.
+ */
+public class DistanceOracle<V,E> {
+
+    /** How landmarks are chosen. */
+    public enum Strategy {
+        /** The vertices of highest degree, which lie on many shortest paths of a heavy-tailed graph. */
+        DEGREE,
+        /** Vertices drawn uniformly at random. */
+        RANDOM
+    }
+
+    /** Default number of landmarks. */
+    public static final int DEFAULT_LANDMARKS = 16;
+
+    private static final int UNREACHABLE = -1;
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private final Graph<V,E> graph;
+    private final boolean directed;
+    private final int numLandmarks;
+    private final Strategy strategy;
+    private final Random random;
+
+    private Map<Vertex<V>, Integer> index;       // vertex -> vertex number
+    private List<Vertex<V>> verts;
+    private int[] offsets, targets;              // out-adjacency in compressed sparse row form
+    private int k;                               // landmarks actually used
+    private List<Vertex<V>> landmarks;
+    private short[] fromShort, toShort;          // distances landmark -> vertex and vertex -> landmark,
+    private int[] fromInt, toInt;                // k consecutive entries per vertex; only one width is set
+    private int[] heap;                          // state of the exact search
+    private long[] heapKeys;
+    private int[] cost, stamp;
+    private int round;
+
+    private long buildNanos;
+    private long queries, queryNanos, searches, searchVisits;
+
+    /** Builds an oracle over g with the default number of landmarks of highest degree. */
+    public DistanceOracle(Graph<V,E> g, boolean directed) {
+        this(g, directed, DEFAULT_LANDMARKS, Strategy.DEGREE, new Random());
+    }
+
+    /**
+     * Builds an oracle over g.
+     *
+     * @param g Graph instance
+     * @param directed whether edges may only be followed from origin to destination
+     * @param numLandmarks number of landmarks; fewer are used if g has fewer vertices
+     * @param strategy how the landmarks are chosen
+     * @param random source of random landmarks, and of the ties between vertices of equal degree
+     * @throws IllegalArgumentException if numLandmarks is not positive
+     */
+    public DistanceOracle(Graph<V,E> g, boolean directed, int numLandmarks, Strategy strategy, Random random)
+            throws IllegalArgumentException {
+        if (numLandmarks < 1) throw new IllegalArgumentException("numLandmarks must be positive");
+        this.graph = g;
+        this.directed = directed;
+        this.numLandmarks = numLandmarks;
+        this.strategy = strategy;
+        this.random = random;
+        rebuild();
+    }
+
+    /**
+     * Returns an estimate of the number of edges on a shortest path from u to v, never below the
+     * true distance, or -1 if no landmark lies on any path from u to v. That is always the case
+     * when v cannot be reached from u, but may also happen for a few reachable pairs.
+     * @throws IllegalArgumentException if u or v are not vertices of the indexed graph
+     */
+    public int estimateDistance(Vertex<V> u, Vertex<V> v) throws IllegalArgumentException {
+        long start = System.nanoTime();
+        int upper = upperBound(validate(u), validate(v));
+        queryNanos += System.nanoTime() - start;
+        queries++;
+        return upper == INFINITY ? -1 : upper;
+    }
+
+    /**
+     * Returns a lower bound on the distance from u to v, or -1 if the landmarks prove that v cannot
+     * be reached from u.
+     * @throws IllegalArgumentException if u or v are not vertices of the indexed graph
+     */
+    public int lowerBound(Vertex<V> u, Vertex<V> v) throws IllegalArgumentException {
+        int lower = lowerBound(validate(u), validate(v));
+        return lower == INFINITY ? -1 : lower;
+    }
+
+    /**
+     * Returns the number of edges on a shortest path from u to v, or -1 if v cannot be reached
+     * from u. The answer comes from an A* search guided by the landmarks.
+     * @throws IllegalArgumentException if u or v are not vertices of the indexed graph
+     */
+    public int distance(Vertex<V> u, Vertex<V> v) throws IllegalArgumentException {
+        int d = search(validate(u), validate(v));
+        return d == INFINITY ? -1 : d;
+    }
+
+    /** Rebuilds the landmarks and their distance tables from the current state of the graph. */
+    public void rebuild() {
+        long start = System.nanoTime();
+        int n = graph.numVertices();
+        index = new HashMap<>(2 * n);
+        verts = new ArrayList<>(n);
+        for (Vertex<V> v : graph.vertices()) {
+            index.put(v, verts.size());
+            verts.add(v);
+        }
+        offsets = new int[n + 1];
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] = offsets[i] + graph.outDegree(verts.get(i));
+        targets = new int[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int j = offsets[i];
+            for (Edge<E> e : graph.outgoingEdges(verts.get(i)))
+                targets[j++] = index.get(graph.opposite(verts.get(i), e));
+        }
+        int[] inOffsets = offsets, inTargets = targets;
+        if (directed) {
+            inOffsets = new int[n + 1];
+            for (int t : targets)
+                inOffsets[t + 1]++;
+            for (int i = 0; i < n; i++)
+                inOffsets[i + 1] += inOffsets[i];
+            inTargets = new int[targets.length];
+            int[] fill = Arrays.copyOf(inOffsets, n);
+            for (int i = 0; i < n; i++)
+                for (int j = offsets[i]; j < offsets[i + 1]; j++)
+                    inTargets[fill[targets[j]]++] = i;
+        }
+
+        int[] chosen = chooseLandmarks(n, inOffsets);
+        k = chosen.length;
+        List<Vertex<V>> list = new ArrayList<>(k);
+        for (int l : chosen)
+            list.add(verts.get(l));
+        landmarks = Collections.unmodifiableList(list);
+        if ((long) n * k > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("graph too large for " + k + " landmarks");
+
+        // one BFS per landmark and direction, spread over the common fork-join pool
+        int[][] from = new int[k][], to = new int[k][];
+        final int[] fo = offsets, ft = targets, bo = inOffsets, bt = inTargets;
+        IntStream.range(0, directed ? 2 * k : k).parallel().forEach(t -> {
+            if (t < k)
+                from[t] = bfs(chosen[t], fo, ft);
+            else
+                to[t - k] = bfs(chosen[t - k], bo, bt);
+        });
+        int max = 0;
+        for (int[] d : from) for (int x : d) max = Math.max(max, x);
+        if (directed)
+            for (int[] d : to) for (int x : d) max = Math.max(max, x);
+        fromShort = toShort = null;
+        fromInt = toInt = null;
+        if (max <= Short.MAX_VALUE) {
+            fromShort = packShort(from, n);
+            toShort = directed ? packShort(to, n) : fromShort;
+        } else {
+            fromInt = packInt(from, n);
+            toInt = directed ? packInt(to, n) : fromInt;
+        }
+
+        cost = new int[n];
+        stamp = new int[n];
+        round = 0;
+        heap = new int[Math.max(n, 1)];
+        heapKeys = new long[Math.max(n, 1)];
+        buildNanos = System.nanoTime() - start;
+    }
+
+    /** Returns the landmarks, in the order of their table entries. */
+    public List<Vertex<V>> landmarks() { return landmarks; }
+
+    /** Returns the time the last build took, in nanoseconds. */
+    public long buildTimeNanos() { return buildNanos; }
+
+    /** Returns an estimate of the memory held by the distance tables and the graph snapshot, in bytes. */
+    public long indexSizeBytes() {
+        long n = verts.size();
+        long tables = fromShort != null ? 2L * fromShort.length : 4L * fromInt.length;
+        if (directed)
+            tables *= 2;
+        return tables + 4L * (offsets.length + targets.length) + 48L * n;   // 48: vertex map entry and list slot
+    }
+
+    /** Returns the number of bytes per table entry, 2 or 4. */
+    public int entryBytes() { return fromShort != null ? 2 : 4; }
+
+    /** Returns the number of estimates answered since the last reset. */
+    public long queryCount() { return queries; }
+
+    /** Returns the average time of an estimate, in nanoseconds. */
+    public double averageQueryNanos() { return queries == 0 ? 0.0 : (double) queryNanos / queries; }
+
+    /** Returns the number of exact searches that had to explore the graph since the last reset. */
+    public long searchCount() { return searches; }
+
+    /** Returns the number of vertices settled by exact searches since the last reset. */
+    public long searchVisits() { return searchVisits; }
+
+    /** Resets the query statistics. */
+    public void resetStatistics() {
+        queries = queryNanos = searches = searchVisits = 0;
+    }
+
+    /**
+     * Measures the error of the estimates against exact distances. A full BFS is run from each of
+     * the given number of random sources, and the estimate to every vertex it reaches is compared
+     * with the distance found.
+     *
+     * @param sources number of random source vertices
+     * @param random source of the sources
+     * @return the error statistics of the sampled pairs
+     */
+    public ErrorStatistics measureError(int sources, Random random) {
+        ErrorStatistics stats = new ErrorStatistics();
+        int n = verts.size();
+        for (int s = 0; s < sources && n > 0; s++) {
+            int u = random.nextInt(n);
+            int[] exact = bfs(u, offsets, targets);
+            for (int v = 0; v < n; v++) {
+                if (v == u || exact[v] == UNREACHABLE)
+                    continue;
+                int upper = upperBound(u, v);
+                stats.pairs++;
+                if (upper == INFINITY) {
+                    stats.unbounded++;
+                    continue;
+                }
+                int error = upper - exact[v];
+                if (error == 0)
+                    stats.exact++;
+                stats.absoluteError += error;
+                stats.relativeError += (double) error / exact[v];
+                stats.maxError = Math.max(stats.maxError, error);
+            }
+        }
+        return stats;
+    }
+
+    //---------------- nested ErrorStatistics class ----------------
+    /** The error of the estimates over a sample of reachable pairs. */
+    public static class ErrorStatistics {
+        private long pairs, exact, unbounded, absoluteError;
+        private double relativeError;
+        private int maxError;
+
+        /** Returns the number of reachable pairs sampled. */
+        public long pairs() { return pairs; }
+
+        /** Returns the fraction of sampled pairs estimated exactly. */
+        public double exactFraction() { return pairs == 0 ? 0.0 : (double) exact / pairs; }
+
+        /** Returns the fraction of sampled pairs no landmark connects, which get no estimate. */
+        public double unboundedFraction() { return pairs == 0 ? 0.0 : (double) unbounded / pairs; }
+
+        /** Returns the mean amount by which an estimate exceeds the distance, over pairs with an estimate. */
+        public double meanAbsoluteError() { return bounded() == 0 ? 0.0 : (double) absoluteError / bounded(); }
+
+        /** Returns the mean ratio of that excess to the distance, over pairs with an estimate. */
+        public double meanRelativeError() { return bounded() == 0 ? 0.0 : relativeError / bounded(); }
+
+        /** Returns the largest amount by which an estimate exceeds the distance. */
+        public int maxAbsoluteError() { return maxError; }
+
+        private long bounded() { return pairs - unbounded; }
+
+        public String toString() {
+            return String.format("%d pairs: %.1f%% exact, mean error %.3f hops (%.1f%%), max %d, %.2f%% without estimate",
+                    pairs, 100 * exactFraction(), meanAbsoluteError(), 100 * meanRelativeError(),
+                    maxAbsoluteError(), 100 * unboundedFraction());
+        }
+    }  //------------ end of ErrorStatistics class ------------
+
+    private int upperBound(int u, int v) {
+        if (u == v)
+            return 0;
+        int best = INFINITY;
+        int bu = u * k, bv = v * k;
+        for (int l = 0; l < k; l++) {
+            int a = to(bu + l), b = from(bv + l);            // d(u,L) and d(L,v)
+            if (a != UNREACHABLE && b != UNREACHABLE && a + b < best)
+                best = a + b;
+        }
+        return best;
+    }
+
+    private int lowerBound(int u, int v) {
+        if (u == v)
+            return 0;
+        int best = 0;
+        int bu = u * k, bv = v * k;
+        for (int l = 0; l < k; l++) {
+            int lu = from(bu + l), lv = from(bv + l);        // d(L,u) and d(L,v)
+            if (!directed) {
+                if ((lu == UNREACHABLE) != (lv == UNREACHABLE))
+                    return INFINITY;                         // u and v lie in different components
+                if (lu != UNREACHABLE)
+                    best = Math.max(best, Math.abs(lv - lu));
+                continue;
+            }
+            if (lu != UNREACHABLE) {
+                if (lv == UNREACHABLE)
+                    return INFINITY;                         // L reaches u but not v
+                best = Math.max(best, lv - lu);
+            }
+            int ul = to(bu + l), vl = to(bv + l);            // d(u,L) and d(v,L)
+            if (vl != UNREACHABLE) {
+                if (ul == UNREACHABLE)
+                    return INFINITY;                         // v reaches L but u does not
+                best = Math.max(best, ul - vl);
+            }
+        }
+        return best;
+    }
+
+    /** A* search from u to v with the landmark lower bounds as a consistent heuristic. */
+    private int search(int u, int v) {
+        int lower = lowerBound(u, v);
+        if (lower == INFINITY)
+            return INFINITY;
+        int upper = upperBound(u, v);
+        if (lower == upper)
+            return upper;
+        searches++;
+        if (++round == 0) {                          // stamps wrapped around
+            Arrays.fill(stamp, 0);
+            round = 1;
+        }
+        int size = 0;
+        stamp[u] = round;
+        cost[u] = 0;
+        heap[size] = u;
+        heapKeys[size++] = key(lower, 0);
+        while (size > 0) {
+            int x = heap[0];
+            long key = heapKeys[0];
+            size = pop(size);
+            int g = cost[x];
+            if (Integer.MAX_VALUE - (int) key != g)
+                continue;                            // stale entry, x was reached more cheaply since
+            searchVisits++;
+            if (x == v)
+                return g;
+            for (int j = offsets[x]; j < offsets[x + 1]; j++) {
+                int y = targets[j];
+                if (stamp[y] == round && cost[y] <= g + 1)
+                    continue;
+                int h = lowerBound(y, v);
+                if (h == INFINITY || g + 1 + h > upper)
+                    continue;                        // cannot lie on a path shorter than the bound
+                stamp[y] = round;
+                cost[y] = g + 1;
+                size = push(size, y, key(g + 1 + h, g + 1));
+            }
+        }
+        return upper;
+    }
+
+    /** Orders entries by estimated path length, and entries of equal length by decreasing cost. */
+    private static long key(int estimate, int cost) {
+        return (long) estimate << 32 | (Integer.MAX_VALUE - cost);
+    }
+
+    private int push(int size, int x, long key) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * size);
+            heapKeys = Arrays.copyOf(heapKeys, 2 * size);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapKeys[parent] <= key)
+                break;
+            heap[i] = heap[parent];
+            heapKeys[i] = heapKeys[parent];
+            i = parent;
+        }
+        heap[i] = x;
+        heapKeys[i] = key;
+        return size;
+    }
+
+    private int pop(int size) {
+        size--;
+        int x = heap[size];
+        long key = heapKeys[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && heapKeys[child + 1] < heapKeys[child])
+                child++;
+            if (key <= heapKeys[child])
+                break;
+            heap[i] = heap[child];
+            heapKeys[i] = heapKeys[child];
+            i = child;
+        }
+        heap[i] = x;
+        heapKeys[i] = key;
+        return size;
+    }
+
+    private int from(int i) { return fromShort != null ? fromShort[i] : fromInt[i]; }
+
+    private int to(int i) { return toShort != null ? toShort[i] : toInt[i]; }
+
+    /** Returns the BFS distances from s, with UNREACHABLE for the vertices it does not reach. */
+    private static int[] bfs(int s, int[] offsets, int[] targets) {
+        int n = offsets.length - 1;
+        int[] dist = new int[n];
+        Arrays.fill(dist, UNREACHABLE);
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        dist[s] = 0;
+        queue[tail++] = s;
+        while (head < tail) {
+            int x = queue[head++];
+            for (int j = offsets[x]; j < offsets[x + 1]; j++) {
+                int y = targets[j];
+                if (dist[y] == UNREACHABLE) {
+                    dist[y] = dist[x] + 1;
+                    queue[tail++] = y;
+                }
+            }
+        }
+        return dist;
+    }
+
+    private int[] chooseLandmarks(int n, int[] inOffsets) {
+        int count = Math.min(numLandmarks, n);
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        Collections.shuffle(Arrays.asList(order), random);
+        if (strategy == Strategy.DEGREE) {
+            int[] degree = new int[n];
+            for (int i = 0; i < n; i++) {
+                degree[i] = offsets[i + 1] - offsets[i];
+                if (directed)
+                    degree[i] += inOffsets[i + 1] - inOffsets[i];
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(degree[b], degree[a]));   // stable: ties stay shuffled
+        }
+        int[] chosen = new int[count];
+        for (int i = 0; i < count; i++)
+            chosen[i] = order[i];
+        return chosen;
+    }
+
+    private short[] packShort(int[][] dist, int n) {
+        short[] table = new short[n * k];
+        for (int l = 0; l < k; l++)
+            for (int v = 0; v < n; v++)
+                table[v * k + l] = (short) dist[l][v];
+        return table;
+    }
+
+    private int[] packInt(int[][] dist, int n) {
+        int[] table = new int[n * k];
+        for (int l = 0; l < k; l++)
+            for (int v = 0; v < n; v++)
+                table[v * k + l] = dist[l][v];
+        return table;
+    }
+
+    private int validate(Vertex<V> v) {
+        Integer i = index.get(v);
+        if (i == null) throw new IllegalArgumentException("Invalid vertex");
+        return i;
+    }
+
+    /** a main method to demonstrate the oracle on a random graph with a few hubs */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        Random random = new Random(42);
+        AdjacencyMapGraph<Integer, Integer> graph = new AdjacencyMapGraph<>(false);
+        List<Vertex<Integer>> vs = new ArrayList<>();
+        List<Vertex<Integer>> ends = new ArrayList<>();      // endpoints of the edges so far, for preferential attachment
+        for (int i = 0; i < n; i++) {
+            Vertex<Integer> v = graph.insertVertex(i);
+            for (int j = 0; j < 3 && !vs.isEmpty(); j++) {
+                Vertex<Integer> w = ends.isEmpty() || random.nextInt(4) == 0
+                        ? vs.get(random.nextInt(vs.size())) : ends.get(random.nextInt(ends.size()));
+                if (graph.getEdge(v, w) == null) {
+                    graph.insertEdge(v, w, graph.numEdges());
+                    ends.add(v);
+                    ends.add(w);
+                }
+            }
+            vs.add(v);
+        }
+        for (Strategy strategy : Strategy.values()) {
+            DistanceOracle<Integer, Integer> oracle =
+                    new DistanceOracle<>(graph, false, DEFAULT_LANDMARKS, strategy, new Random(1));
+            System.out.printf("%s landmarks: built in %.1f ms, %d KiB (%d-byte entries)%n", strategy,
+                    oracle.buildTimeNanos() / 1e6, oracle.indexSizeBytes() / 1024, oracle.entryBytes());
+            System.out.println("  " + oracle.measureError(20, new Random(2)));
+            long start = System.nanoTime();
+            int queries = 200000;
+            long sum = 0;
+            for (int q = 0; q < queries; q++)
+                sum += oracle.estimateDistance(vs.get(random.nextInt(n)), vs.get(random.nextInt(n)));
+            System.out.printf("  %.0f ns per estimate (checksum %d)%n", (System.nanoTime() - start) / (double) queries, sum);
+            start = System.nanoTime();
+            for (int q = 0; q < 1000; q++)
+                oracle.distance(vs.get(random.nextInt(n)), vs.get(random.nextInt(n)));
+            System.out.printf("  %.1f us per exact distance, %d searches settling %.1f vertices on average%n",
+                    (System.nanoTime() - start) / 1e3 / 1000, oracle.searchCount(),
+                    oracle.searchCount() == 0 ? 0.0 : (double) oracle.searchVisits() / oracle.searchCount());
+        }
+    }
+
+}
@@ -0,0 +1,604 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A graph whose mutations are recorded in a write-ahead log, so that it survives a crash.
+ *
+ * Every vertex and edge gets a numeric id. Each mutation is appended to a {@link MutationLog}
+ * as a compact binary record: a type byte followed by the ids as variable-length integers and,
+ * for insertions, the element written by a Codec. A mutation takes effect only once its record
+ * is appended: removals are applied after the append, and an insertion, which the underlying
+ * graph must accept first, is undone when the append fails. Writes and fsyncs run on the
+ * commit thread of the log, never on the thread of a mutation, so interrupting a mutating
+ * thread neither fails the log nor the mutation. When a write or fsync does fail, every further
+ * mutation is rejected with an UncheckedIOException and leaves the graph unchanged, until
+ * {@link #compact()} recovers by writing the graph as it is in memory to a new snapshot and
+ * starting a new log. A mutation whose record was appended but could not be forced to disk
+ * stays applied, so it survives a recovering compaction, but not a restart before one.
+ * Mutations may be made from several threads; their records are committed together by group
+ * commit. Reads are forwarded to the underlying graph and, like it, need external
+ * synchronization when they run concurrently with mutations.
+ *
+ * {@link #compact()} writes a snapshot of the whole graph and starts an empty log. Both file
+ * names carry a generation number, and the snapshot is moved into place atomically, so that
+ * {@link #open} always finds a snapshot and the log of the same generation, and recovers the
+ * graph by loading the one and replaying the other.
+ */
+public class DurableGraph<V,E> implements Graph<V,E>, Closeable {
+
+    private static final byte INSERT_VERTEX = 1, INSERT_EDGE = 2, REMOVE_VERTEX = 3, REMOVE_EDGE = 4;
+    private static final int SNAPSHOT_MAGIC = 0x47524150;
+    private static final String SNAPSHOT = "snapshot";
+    private static final String LOG_PREFIX = "log-";
+
+    private final Graph<V,E> graph;
+    private final Path dir;
+    private final Codec<V> vertexCodec;
+    private final Codec<E> edgeCodec;
+    private final boolean waitForSync;
+    private final long syncIntervalMillis;
+    private final Map<Vertex<V>, Long> vertexIds = new HashMap<>();
+    private final Map<Long, Vertex<V>> vertexById = new HashMap<>();
+    private final Map<Edge<E>, Long> edgeIds = new HashMap<>();
+    private final Map<Long, Edge<E>> edgeById = new HashMap<>();
+    private final RecordBuffer record = new RecordBuffer();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private long nextVertexId, nextEdgeId;
+    private long generation;
+    private MutationLog log;
+
+    private DurableGraph(Graph<V,E> graph, Path dir, Codec<V> vertexCodec, Codec<E> edgeCodec,
+                         long syncIntervalMillis) {
+        this.graph = graph;
+        this.dir = dir;
+        this.vertexCodec = vertexCodec;
+        this.edgeCodec = edgeCodec;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.waitForSync = syncIntervalMillis == 0;
+    }
+
+    /**
+     * Opens the durable graph stored in directory dir, recovering its latest state into the
+     * given empty graph, and creates the directory if it does not exist yet.
+     *
+     * @param dir directory holding the snapshot and the log
+     * @param empty an empty graph that receives the recovered vertices and edges
+     * @param vertexCodec writes and reads vertex elements
+     * @param edgeCodec writes and reads edge elements
+     * @param syncIntervalMillis 0 to make every mutation wait until its record is on disk, or
+     *        the period at which a background thread commits while mutations return at once
+     * @throws IOException if the files cannot be read or the snapshot is corrupt
+     * @throws IllegalArgumentException if the graph is not empty or the interval is negative
+     */
+    public static <V,E> DurableGraph<V,E> open(Path dir, Graph<V,E> empty, Codec<V> vertexCodec,
+                                               Codec<E> edgeCodec, long syncIntervalMillis)
+            throws IOException, IllegalArgumentException {
+        if (empty.numVertices() != 0) throw new IllegalArgumentException("graph is not empty");
+        if (syncIntervalMillis < 0) throw new IllegalArgumentException("syncIntervalMillis must not be negative");
+        Files.createDirectories(dir);
+        DurableGraph<V,E> g = new DurableGraph<>(empty, dir, vertexCodec, edgeCodec, syncIntervalMillis);
+        g.recover();
+        return g;
+    }
+
+    /** Returns the generation of the current snapshot and log. */
+    public long generation() { return generation; }
+
+    /**
+     * Returns the id of vertex v, stable across restarts.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public synchronized long id(Vertex<V> v) throws IllegalArgumentException {
+        Long id = vertexIds.get(v);
+        if (id == null) throw new IllegalArgumentException("Invalid vertex");
+        return id;
+    }
+
+    /** Returns the vertex with the given id, or null if there is none. */
+    public synchronized Vertex<V> vertex(long id) { return vertexById.get(id); }
+
+    /** Blocks until every mutation made so far is on disk. */
+    public void sync() throws IOException {
+        MutationLog current;
+        synchronized (this) {
+            current = log;
+        }
+        current.sync();
+    }
+
+    /** Returns the number of bytes in the current log. */
+    public synchronized long logSize() { return log.size(); }
+
+    /**
+     * Writes a snapshot of the graph and replaces the log by an empty one. After the log has
+     * failed, this is how the graph accepts mutations again.
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        if (!log.hasFailed())
+            log.sync();
+        long next = generation + 1;
+        Path tmp = dir.resolve(SNAPSHOT + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(next);
+            out.writeLong(nextVertexId);
+            out.writeLong(nextEdgeId);
+            out.writeInt(graph.numVertices());
+            for (Vertex<V> v : graph.vertices()) {
+                out.writeLong(vertexIds.get(v));
+                writeElement(out, vertexCodec, v.getElement());
+            }
+            out.writeInt(graph.numEdges());
+            for (Edge<E> e : graph.edges()) {
+                Vertex<V>[] ends = graph.endVertices(e);
+                out.writeLong(edgeIds.get(e));
+                out.writeLong(vertexIds.get(ends[0]));
+                out.writeLong(vertexIds.get(ends[1]));
+                writeElement(out, edgeCodec, e.getElement());
+            }
+            out.flush();
+            long sum = checked.getChecksum().getValue();
+            out.writeLong(sum);
+            out.flush();
+            channel.force(true);
+        }
+        Path nextLog = dir.resolve(LOG_PREFIX + next);
+        Files.deleteIfExists(nextLog);         // left over by an earlier, interrupted compaction
+        Files.move(tmp, dir.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+        MutationLog old = log;
+        log = new MutationLog(nextLog, syncIntervalMillis);
+        generation = next;
+        old.close();
+        deleteStaleLogs();
+    }
+
+    /** Commits the pending mutations and closes the log. */
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    /** Returns the number of vertices of the graph */
+    public int numVertices() { return graph.numVertices(); }
+
+    /** Returns the number of edges of the graph */
+    public int numEdges() { return graph.numEdges(); }
+
+    /** Returns the vertices of the graph as an iterable collection */
+    public Iterable<Vertex<V>> vertices() { return graph.vertices(); }
+
+    /** Returns the edges of the graph as an iterable collection */
+    public Iterable<Edge<E>> edges() { return graph.edges(); }
+
+    /**
+     * Returns the number of edges for which vertex v is the origin.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public int outDegree(Vertex<V> v) throws IllegalArgumentException { return graph.outDegree(v); }
+
+    /**
+     * Returns the number of edges for which vertex v is the destination.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public int inDegree(Vertex<V> v) throws IllegalArgumentException { return graph.inDegree(v); }
+
+    /**
+     * Returns an iterable collection of edges for which vertex v is the origin.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public Iterable<Edge<E>> outgoingEdges(Vertex<V> v) throws IllegalArgumentException {
+        return graph.outgoingEdges(v);
+    }
+
+    /**
+     * Returns an iterable collection of edges for which vertex v is the destination.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public Iterable<Edge<E>> incomingEdges(Vertex<V> v) throws IllegalArgumentException {
+        return graph.incomingEdges(v);
+    }
+
+    /** Returns the edge from u to v, or null if they are not adjacent. */
+    public Edge<E> getEdge(Vertex<V> u, Vertex<V> v) throws IllegalArgumentException {
+        return graph.getEdge(u, v);
+    }
+
+    /** Returns the vertices of edge e as an array of length two. */
+    public Vertex<V>[] endVertices(Edge<E> e) throws IllegalArgumentException {
+        return graph.endVertices(e);
+    }
+
+    /** Returns the vertex that is opposite vertex v on edge e. */
+    public Vertex<V> opposite(Vertex<V> v, Edge<E> e) throws IllegalArgumentException {
+        return graph.opposite(v, e);
+    }
+
+    /**
+     * Inserts and returns a new vertex with the given element.
+     * @throws UncheckedIOException if the mutation cannot be logged
+     */
+    public Vertex<V> insertVertex(V element) {
+        Vertex<V> v;
+        long sequence;
+        MutationLog current;
+        synchronized (this) {
+            long id = nextVertexId;
+            record.reset();
+            record.write(INSERT_VERTEX);
+            record.writeVarLong(id);
+            writeElement(vertexCodec, element);
+            v = graph.insertVertex(element);
+            current = log;
+            try {
+                sequence = append(current);
+            } catch (RuntimeException ex) {
+                graph.removeVertex(v);                 // not logged, so not applied either
+                throw ex;
+            }
+            nextVertexId++;
+            vertexIds.put(v, id);
+            vertexById.put(id, v);
+        }
+        commit(current, sequence);
+        return v;
+    }
+
+    /**
+     * Inserts and returns a new edge between vertices u and v, storing given element.
+     * @throws IllegalArgumentException if u or v are invalid vertices, or if an edge already exists between u and v.
+     * @throws UncheckedIOException if the mutation cannot be logged
+     */
+    public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element) throws IllegalArgumentException {
+        Edge<E> e;
+        long sequence;
+        MutationLog current;
+        synchronized (this) {
+            long id = nextEdgeId;
+            record.reset();
+            record.write(INSERT_EDGE);
+            record.writeVarLong(id);
+            record.writeVarLong(id(u));
+            record.writeVarLong(id(v));
+            writeElement(edgeCodec, element);
+            e = graph.insertEdge(u, v, element);
+            current = log;
+            try {
+                sequence = append(current);
+            } catch (RuntimeException ex) {
+                graph.removeEdge(e);                   // not logged, so not applied either
+                throw ex;
+            }
+            nextEdgeId++;
+            edgeIds.put(e, id);
+            edgeById.put(id, e);
+        }
+        commit(current, sequence);
+        return e;
+    }
+
+    /**
+     * Removes a vertex and all its incident edges from the graph.
+     * @throws UncheckedIOException if the mutation cannot be logged
+     */
+    public void removeVertex(Vertex<V> v) throws IllegalArgumentException {
+        long sequence;
+        MutationLog current;
+        synchronized (this) {
+            long id = id(v);
+            record.reset();
+            record.write(REMOVE_VERTEX);
+            record.writeVarLong(id);
+            current = log;
+            sequence = append(current);
+            List<Edge<E>> incident = new ArrayList<>();
+            for (Edge<E> e : graph.outgoingEdges(v))
+                incident.add(e);
+            for (Edge<E> e : graph.incomingEdges(v))
+                incident.add(e);
+            graph.removeVertex(v);
+            for (Edge<E> e : incident)
+                removeEdgeId(e);                       // undirected edges are listed twice
+            vertexIds.remove(v);
+            vertexById.remove(id);
+        }
+        commit(current, sequence);
+    }
+
+    /**
+     * Removes an edge from the graph.
+     * @throws UncheckedIOException if the mutation cannot be logged
+     */
+    public void removeEdge(Edge<E> e) throws IllegalArgumentException {
+        long sequence;
+        MutationLog current;
+        synchronized (this) {
+            Long id = edgeIds.get(e);
+            if (id == null) throw new IllegalArgumentException("Invalid edge");
+            record.reset();
+            record.write(REMOVE_EDGE);
+            record.writeVarLong(id);
+            current = log;
+            sequence = append(current);
+            graph.removeEdge(e);
+            edgeIds.remove(e);
+            edgeById.remove(id);
+        }
+        commit(current, sequence);
+    }
+
+    /** Returns a string representation of the underlying graph. */
+    public String toString() { return graph.toString(); }
+
+    private long append(MutationLog current) {
+        try {
+            return current.append(record.buffer(), 0, record.size());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void commit(MutationLog current, long sequence) {
+        if (!waitForSync)
+            return;
+        try {
+            current.awaitDurable(sequence);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeElement(Codec<?> codec, Object element) {
+        try {
+            writeElement(recordOut, codec, element);
+            recordOut.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private static <T> void writeElement(DataOutput out, Codec<T> codec, Object element) throws IOException {
+        out.writeBoolean(element != null);
+        if (element != null)
+            codec.write((T) element, out);
+    }
+
+    private static <T> T readElement(DataInput in, Codec<T> codec) throws IOException {
+        return in.readBoolean() ? codec.read(in) : null;
+    }
+
+    /** Loads the snapshot, if any, and replays the log of its generation. */
+    private void recover() throws IOException {
+        Path snapshot = dir.resolve(SNAPSHOT);
+        if (Files.exists(snapshot))
+            loadSnapshot(snapshot);
+        Path logFile = dir.resolve(LOG_PREFIX + generation);
+        if (Files.exists(logFile))
+            MutationLog.replay(logFile, this::apply);
+        log = new MutationLog(logFile, syncIntervalMillis);
+        deleteStaleLogs();
+        Files.deleteIfExists(dir.resolve(SNAPSHOT + ".tmp"));
+    }
+
+    private void loadSnapshot(Path snapshot) throws IOException {
+        try (InputStream file = Files.newInputStream(snapshot)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, 1 << 16), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC)
+                throw new IOException("not a graph snapshot: " + snapshot);
+            generation = in.readLong();
+            nextVertexId = in.readLong();
+            nextEdgeId = in.readLong();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                long id = in.readLong();
+                Vertex<V> v = graph.insertVertex(readElement(in, vertexCodec));
+                vertexIds.put(v, id);
+                vertexById.put(id, v);
+            }
+            int m = in.readInt();
+            for (int i = 0; i < m; i++) {
+                long id = in.readLong();
+                Vertex<V> u = vertexById.get(in.readLong());
+                Vertex<V> v = vertexById.get(in.readLong());
+                Edge<E> e = graph.insertEdge(u, v, readElement(in, edgeCodec));
+                edgeIds.put(e, id);
+                edgeById.put(id, e);
+            }
+            long sum = checked.getChecksum().getValue();
+            if (in.readLong() != sum)
+                throw new IOException("corrupt graph snapshot: " + snapshot);
+        }
+    }
+
+    /** Applies one log record to the graph during recovery. */
+    private void apply(ByteBuffer buffer) {
+        try {
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(buffer.array(), buffer.position(), buffer.remaining()));
+            byte type = in.readByte();
+            long id = readVarLong(in);
+            switch (type) {
+                case INSERT_VERTEX: {
+                    Vertex<V> v = graph.insertVertex(readElement(in, vertexCodec));
+                    vertexIds.put(v, id);
+                    vertexById.put(id, v);
+                    nextVertexId = Math.max(nextVertexId, id + 1);
+                    break;
+                }
+                case INSERT_EDGE: {
+                    Vertex<V> u = vertexById.get(readVarLong(in));
+                    Vertex<V> v = vertexById.get(readVarLong(in));
+                    Edge<E> e = graph.insertEdge(u, v, readElement(in, edgeCodec));
+                    edgeIds.put(e, id);
+                    edgeById.put(id, e);
+                    nextEdgeId = Math.max(nextEdgeId, id + 1);
+                    break;
+                }
+                case REMOVE_VERTEX: {
+                    Vertex<V> v = vertexById.remove(id);
+                    for (Edge<E> e : graph.outgoingEdges(v))
+                        removeEdgeId(e);
+                    for (Edge<E> e : graph.incomingEdges(v))
+                        removeEdgeId(e);
+                    vertexIds.remove(v);
+                    graph.removeVertex(v);
+                    break;
+                }
+                case REMOVE_EDGE: {
+                    Edge<E> e = edgeById.remove(id);
+                    edgeIds.remove(e);
+                    graph.removeEdge(e);
+                    break;
+                }
+                default:
+                    throw new IOException("unknown record type " + type);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void removeEdgeId(Edge<E> e) {
+        Long id = edgeIds.remove(e);
+        if (id != null)
+            edgeById.remove(id);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long x = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            x |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return x;
+    }
+
+    /** Deletes the logs of other generations than the current one. */
+    private void deleteStaleLogs() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, LOG_PREFIX + "*")) {
+            for (Path file : files)
+                if (!file.getFileName().toString().equals(LOG_PREFIX + generation))
+                    Files.deleteIfExists(file);
+        }
+    }
+
+    /** Makes the rename of the snapshot durable, where the platform allows it. */
+    private void forceDirectory() {
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        } catch (IOException ex) {
+            // not supported on every platform; the rename is still atomic
+        }
+    }
+
+    //---------------- nested Codec interface ----------------
+    /** Writes elements to and reads them back from a binary stream. */
+    public interface Codec<T> {
+        /** Writes a non-null element. */
+        void write(T element, DataOutput out) throws IOException;
+
+        /** Reads an element written by {@link #write}. */
+        T read(DataInput in) throws IOException;
+
+        /** A codec for strings of any length, encoded as UTF-8. */
+        Codec<String> STRING = new Codec<String>() {
+            public void write(String element, DataOutput out) throws IOException {
+                byte[] bytes = element.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            public String read(DataInput in) throws IOException {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+
+        /** A codec for long values. */
+        Codec<Long> LONG = new Codec<Long>() {
+            public void write(Long element, DataOutput out) throws IOException { out.writeLong(element); }
+
+            public Long read(DataInput in) throws IOException { return in.readLong(); }
+        };
+    }  //------------ end of Codec interface ------------
+
+
+    //---------------- nested RecordBuffer class ----------------
+    /** A reusable output buffer for one log record. */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        public RecordBuffer() { super(64); }
+
+        public byte[] buffer() { return buf; }
+
+        /** Writes an unsigned variable-length integer, seven bits per byte, low bits first. */
+        public void writeVarLong(long x) {
+            while ((x & ~0x7FL) != 0) {
+                write((int) ((x & 0x7F) | 0x80));
+                x >>>= 7;
+            }
+            write((int) x);
+        }
+    }  //------------ end of RecordBuffer class ------------
+
+
+    /** a main method to demonstrate logging, recovery and compaction */
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("graph");
+        DurableGraph<String, String> graph = open(dir, new AdjacencyMapGraph<>(false),
+                Codec.STRING, Codec.STRING, 0);
+        Vertex<String> u = graph.insertVertex("u");
+        Vertex<String> v = graph.insertVertex("v");
+        Vertex<String> w = graph.insertVertex("w");
+        graph.insertEdge(u, v, "e");
+        graph.insertEdge(v, w, "f");
+        graph.compact();
+        Vertex<String> z = graph.insertVertex("z");
+        graph.insertEdge(w, z, "h");
+        graph.removeVertex(u);
+        graph.close();                        // a crash would lose nothing either
+
+        DurableGraph<String, String> recovered = open(dir, new AdjacencyMapGraph<>(false),
+                Codec.STRING, Codec.STRING, 0);
+        System.out.println("generation " + recovered.generation() + ", log of "
+                + recovered.logSize() + " bytes:");
+        System.out.println(recovered);
+        recovered.close();
+    }
+
+}
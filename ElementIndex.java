@@ -0,0 +1,44 @@
+/**
+ * An index from keys derived from the elements of vertices or edges to their handles.
+ *
+ * An index is registered with a graph, which fills it with its current vertices or edges and
+ * keeps it up to date on every insertion and removal. A unique index makes the graph reject an
+ * insertion whose key is already present, before the graph is modified; a non-unique index
+ * keeps every handle under its key. The graph derives the keys of an element for all its
+ * indexes before it changes anything, so a key function that throws leaves the graph and its
+ * indexes as they were. Keys are derived again on removal, so elements must not change in a
+ * way that changes their key while they are indexed.
+ */
+public abstract class ElementIndex<T, H> {
+
+    private final boolean unique;
+
+    /** Constructs a unique or a non-unique index. */
+    protected ElementIndex(boolean unique) {
+        this.unique = unique;
+    }
+
+    /** Returns whether the index accepts at most one handle per key. */
+    public boolean isUnique() { return unique; }
+
+    /** Returns the number of handles in the index. */
+    public abstract int size();
+
+    /** Derives the key of an element; the graph does this once per insertion or removal. */
+    abstract Object key(T element);
+
+    /**
+     * Checks that a handle with the given key could be added.
+     * @throws IllegalArgumentException if the index is unique and the key is already present
+     */
+    abstract void checkInsert(Object key) throws IllegalArgumentException;
+
+    /** Adds a handle under the given key. */
+    abstract void add(Object key, H handle);
+
+    /** Removes a handle from under the given key. */
+    abstract void remove(Object key, H handle);
+
+    /** Removes every handle. */
+    abstract void clear();
+}
@@ -0,0 +1,105 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * An element index backed by a hash map, for keys of any type.
+ *
+ * The key of a vertex or edge is computed from its element by a key function; the identity
+ * function indexes the elements themselves. Lookups take expected constant time.
+ */
+public class HashIndex<T, K, H> extends ElementIndex<T, H> {
+
+    private final Function<? super T, ? extends K> keyOf;
+    private final Map<K, Object> map = new HashMap<>();   // a handle, or a Bucket when non-unique
+    private int size = 0;
+
+    /**
+     * Constructs an index on the keys computed by keyOf.
+     *
+     * @param keyOf derives the key from an element
+     * @param unique whether a key may be held by at most one handle
+     */
+    public HashIndex(Function<? super T, ? extends K> keyOf, boolean unique) {
+        super(unique);
+        this.keyOf = keyOf;
+    }
+
+    /** Returns the number of handles in the index. */
+    public int size() { return size; }
+
+    /** Returns the handle with the given key, or null if there is none (an arbitrary one if several). */
+    @SuppressWarnings({"unchecked"})
+    public H find(K key) {
+        Object found = map.get(key);
+        if (found instanceof Bucket)
+            return (H) ((Bucket) found).handles.get(0);
+        return (H) found;
+    }
+
+    /** Returns all handles with the given key, as a read-only list. */
+    @SuppressWarnings({"unchecked"})
+    public List<H> findAll(K key) {
+        Object found = map.get(key);
+        if (found == null)
+            return Collections.emptyList();
+        if (found instanceof Bucket)
+            return Collections.unmodifiableList((List<H>) ((Bucket) found).handles);
+        return Collections.singletonList((H) found);
+    }
+
+    /** Returns whether some handle has the given key. */
+    public boolean containsKey(K key) { return map.containsKey(key); }
+
+    Object key(T element) { return keyOf.apply(element); }
+
+    void checkInsert(Object key) throws IllegalArgumentException {
+        if (isUnique() && map.containsKey(key))
+            throw new IllegalArgumentException("Duplicate key in unique index");
+    }
+
+    @SuppressWarnings({"unchecked"})
+    void add(Object key, H handle) {
+        Object found = map.get(key);
+        if (found == null)
+            map.put((K) key, handle);
+        else if (found instanceof Bucket)
+            ((Bucket) found).handles.add(handle);
+        else {
+            Bucket bucket = new Bucket();
+            bucket.handles.add(found);
+            bucket.handles.add(handle);
+            map.put((K) key, bucket);
+        }
+        size++;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    void remove(Object key, H handle) {
+        Object found = map.get(key);
+        if (found == handle) {
+            map.remove(key);
+            size--;
+        } else if (found instanceof Bucket) {
+            List<Object> handles = ((Bucket) found).handles;
+            if (handles.remove(handle)) {
+                size--;
+                if (handles.size() == 1)
+                    map.put((K) key, handles.get(0));
+            }
+        }
+    }
+
+    void clear() {
+        map.clear();
+        size = 0;
+    }
+
+    /** The handles sharing a key in a non-unique index. */
+    private static class Bucket {
+        private final List<Object> handles = new ArrayList<>(2);
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * An element index for primitive int or long keys, such as numeric ids.
+ *
+ * Keys are kept unboxed in an open addressing table with linear probing, so a lookup costs a
+ * hash and a few array reads and no allocation; only the updates made by the graph pass the
+ * key boxed. Int keys are widened to long, which is lossless: a key function returning an int
+ * can be passed as it is.
+ */
+public class LongHashIndex<T, H> extends ElementIndex<T, H> {
+
+    private final ToLongFunction<? super T> keyOf;
+    private long[] keys = new long[16];
+    private Object[] values = new Object[16];  // null for a free slot, a handle, or a Bucket
+    private int used = 0;                      // number of occupied slots
+    private int size = 0;                      // number of handles
+
+    /**
+     * Constructs an index on the keys computed by keyOf.
+     *
+     * @param keyOf derives the key from an element
+     * @param unique whether a key may be held by at most one handle
+     */
+    public LongHashIndex(ToLongFunction<? super T> keyOf, boolean unique) {
+        super(unique);
+        this.keyOf = keyOf;
+    }
+
+    /** Returns the number of handles in the index. */
+    public int size() { return size; }
+
+    /** Returns the handle with the given key, or null if there is none (an arbitrary one if several). */
+    @SuppressWarnings({"unchecked"})
+    public H find(long key) {
+        Object found = values[slot(key)];
+        if (found instanceof Bucket)
+            return (H) ((Bucket) found).handles.get(0);
+        return (H) found;
+    }
+
+    /** Returns all handles with the given key, as a read-only list. */
+    @SuppressWarnings({"unchecked"})
+    public List<H> findAll(long key) {
+        Object found = values[slot(key)];
+        if (found == null)
+            return Collections.emptyList();
+        if (found instanceof Bucket)
+            return Collections.unmodifiableList((List<H>) ((Bucket) found).handles);
+        return Collections.singletonList((H) found);
+    }
+
+    /** Returns whether some handle has the given key. */
+    public boolean containsKey(long key) { return values[slot(key)] != null; }
+
+    Object key(T element) { return keyOf.applyAsLong(element); }
+
+    void checkInsert(Object key) throws IllegalArgumentException {
+        if (isUnique() && containsKey((Long) key))
+            throw new IllegalArgumentException("Duplicate key in unique index");
+    }
+
+    void add(Object boxed, H handle) {
+        if (2 * (used + 1) > keys.length)
+            resize(2 * keys.length);
+        long key = (Long) boxed;
+        int i = slot(key);
+        Object found = values[i];
+        if (found == null) {
+            keys[i] = key;
+            values[i] = handle;
+            used++;
+        } else if (found instanceof Bucket)
+            ((Bucket) found).handles.add(handle);
+        else {
+            Bucket bucket = new Bucket();
+            bucket.handles.add(found);
+            bucket.handles.add(handle);
+            values[i] = bucket;
+        }
+        size++;
+    }
+
+    void remove(Object key, H handle) {
+        int i = slot((Long) key);
+        Object found = values[i];
+        if (found == handle) {
+            delete(i);
+            size--;
+        } else if (found instanceof Bucket) {
+            List<Object> handles = ((Bucket) found).handles;
+            if (handles.remove(handle)) {
+                size--;
+                if (handles.size() == 1)
+                    values[i] = handles.get(0);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(values, null);
+        used = size = 0;
+    }
+
+    /** Returns the slot holding key, or the free slot where it would be inserted. */
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (values[i] != null && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    /** Frees slot i, moving later entries of the probe sequence back so that none is lost. */
+    private void delete(int i) {
+        int mask = keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == null)
+                break;
+            int home = hash(keys[j]) & mask;
+            // the entry at j may move to i unless its home slot lies cyclically in (i, j]
+            if ((j > i && (home <= i || home > j)) || (j < i && home <= i && home > j)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        values[i] = null;
+        used--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        for (int k = 0; k < oldKeys.length; k++)
+            if (oldValues[k] != null) {
+                int i = slot(oldKeys[k]);
+                keys[i] = oldKeys[k];
+                values[i] = oldValues[k];
+            }
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;                     // finalizer of MurmurHash3
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /** The handles sharing a key in a non-unique index. */
+    private static class Bucket {
+        private final List<Object> handles = new ArrayList<>(2);
+    }
+}
@@ -0,0 +1,301 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Minimum spanning forests of graphs whose edge elements carry a weight.
+ *
+ * Both algorithms ignore the direction of the edges and skip self loops. Edges are copied
+ * once into primitive arrays indexed by vertex number, so the union-find structure and the
+ * scans over the edges never touch the graph objects again. The forest is returned as a list
+ * of the original Edge instances, and {@link #toGraph} turns it into a graph of its own.
+ */
+public class MinimumSpanningForest {
+
+    /** Segments of at most this many edges are sorted instead of being split further. */
+    private static final int KRUSKAL_THRESHOLD = 1024;
+
+    /**
+     * Computes a minimum spanning forest of Graph g with Boruvka's algorithm.
+     * In every round each component picks its lightest edge to another component, the edges
+     * being scanned in parallel; rounds repeat until no component can grow.
+     *
+     * @param g Graph instance
+     * @param weight extracts the weight of an edge from its element
+     * @return the edges of the forest, in the order they were chosen
+     */
+    public static <V,E> PositionalList<Edge<E>> boruvka(Graph<V,E> g, ToDoubleFunction<? super E> weight) {
+        EdgeArrays<V,E> a = new EdgeArrays<>(g, weight);
+        int n = g.numVertices();
+        UnionFind uf = new UnionFind(n);
+        PositionalList<Edge<E>> forest = new LinkedPositionalList<>();
+        int[] comp = new int[n];
+        AtomicIntegerArray best = new AtomicIntegerArray(n);
+        int[] live = IntStream.range(0, a.size).toArray();
+        boolean merged = true;
+        while (merged && live.length > 0) {
+            for (int v = 0; v < n; v++) {
+                comp[v] = uf.find(v);
+                best.set(v, -1);
+            }
+            // drop the edges that already lie within one component, then bid for the lightest edge
+            live = IntStream.of(live).parallel()
+                    .filter(i -> comp[a.source[i]] != comp[a.target[i]])
+                    .toArray();
+            IntStream.of(live).parallel().forEach(i -> {
+                offer(best, comp[a.source[i]], i, a.weight);
+                offer(best, comp[a.target[i]], i, a.weight);
+            });
+            merged = false;
+            for (int c = 0; c < n; c++) {
+                int i = best.get(c);
+                if (i >= 0 && uf.union(a.source[i], a.target[i])) {
+                    forest.addLast(a.edges[i]);
+                    merged = true;
+                }
+            }
+        }
+        return forest;
+    }
+
+    /**
+     * Computes a minimum spanning forest of Graph g with the filter-Kruskal algorithm.
+     * The edges are partitioned around a random pivot weight like in quicksort; the lighter
+     * part is processed first, after which the heavier part is filtered down to the edges
+     * that still connect two different components before it is processed itself.
+     *
+     * @param g Graph instance
+     * @param weight extracts the weight of an edge from its element
+     * @return the edges of the forest, in order of increasing weight
+     */
+    public static <V,E> PositionalList<Edge<E>> filterKruskal(Graph<V,E> g, ToDoubleFunction<? super E> weight) {
+        EdgeArrays<V,E> a = new EdgeArrays<>(g, weight);
+        UnionFind uf = new UnionFind(g.numVertices());
+        PositionalList<Edge<E>> forest = new LinkedPositionalList<>();
+        int[] order = IntStream.range(0, a.size).toArray();
+        filterKruskal(a, order, 0, order.length, uf, forest, new Random(order.length));
+        return forest;
+    }
+
+    /**
+     * Returns a new undirected graph holding a copy of every vertex of Graph g and one edge per
+     * forest edge, storing the same elements.
+     */
+    public static <V,E> AdjacencyMapGraph<V,E> toGraph(Graph<V,E> g, Iterable<Edge<E>> forest) {
+        AdjacencyMapGraph<V,E> result = new AdjacencyMapGraph<>(false);
+        Map<Vertex<V>, Vertex<V>> copy = new HashMap<>();
+        for (Vertex<V> v : g.vertices())
+            copy.put(v, result.insertVertex(v.getElement()));
+        for (Edge<E> e : forest) {
+            Vertex<V>[] ends = g.endVertices(e);
+            result.insertEdge(copy.get(ends[0]), copy.get(ends[1]), e.getElement());
+        }
+        return result;
+    }
+
+    /** Makes edge i the best edge of component c if it is lighter than the current one. */
+    private static void offer(AtomicIntegerArray best, int c, int i, double[] w) {
+        int current = best.get(c);
+        while (current < 0 || lighter(i, current, w)) {
+            if (best.compareAndSet(c, current, i))
+                return;
+            current = best.get(c);
+        }
+    }
+
+    /** Compares edges by weight, breaking ties by index so that every round picks a forest. */
+    private static boolean lighter(int i, int j, double[] w) {
+        int c = Double.compare(w[i], w[j]);
+        return c < 0 || (c == 0 && i < j);
+    }
+
+    private static <V,E> void filterKruskal(
+            EdgeArrays<V,E> a,
+            int[] order,
+            int lo,
+            int hi,
+            UnionFind uf,
+            PositionalList<Edge<E>> forest,
+            Random random
+    ) {
+        if (hi - lo <= KRUSKAL_THRESHOLD) {
+            sort(order, lo, hi, a.weight);
+            kruskal(a, order, lo, hi, uf, forest);
+            return;
+        }
+        // three-way partition: [lo, lt) lighter than the pivot, [lt, gt) equal, [gt, hi) heavier
+        double pivot = a.weight[order[lo + random.nextInt(hi - lo)]];
+        int lt = lo, gt = hi, i = lo;
+        while (i < gt) {
+            int c = Double.compare(a.weight[order[i]], pivot);
+            if (c < 0)
+                swap(order, lt++, i++);
+            else if (c > 0)
+                swap(order, i, --gt);
+            else
+                i++;
+        }
+        filterKruskal(a, order, lo, lt, uf, forest, random);
+        kruskal(a, order, lt, gt, uf, forest);
+        int kept = gt;
+        for (int k = gt; k < hi; k++)           // filter the heavy part
+            if (uf.find(a.source[order[k]]) != uf.find(a.target[order[k]]))
+                order[kept++] = order[k];
+        filterKruskal(a, order, gt, kept, uf, forest, random);
+    }
+
+    /** Adds the edges of a segment sorted by weight that join two different components. */
+    private static <V,E> void kruskal(
+            EdgeArrays<V,E> a,
+            int[] order,
+            int lo,
+            int hi,
+            UnionFind uf,
+            PositionalList<Edge<E>> forest
+    ) {
+        for (int k = lo; k < hi; k++) {
+            int i = order[k];
+            if (uf.union(a.source[i], a.target[i]))
+                forest.addLast(a.edges[i]);
+        }
+    }
+
+    /** Sorts a segment of edge indices by weight, with insertion sort on short segments. */
+    private static void sort(int[] order, int lo, int hi, double[] w) {
+        while (hi - lo > 16) {
+            double pivot = w[order[(lo + hi) >>> 1]];
+            int i = lo, j = hi - 1;
+            while (i <= j) {
+                while (Double.compare(w[order[i]], pivot) < 0) i++;
+                while (Double.compare(w[order[j]], pivot) > 0) j--;
+                if (i <= j)
+                    swap(order, i++, j--);
+            }
+            if (j + 1 - lo < hi - i) {          // recurse into the smaller half
+                sort(order, lo, j + 1, w);
+                lo = i;
+            } else {
+                sort(order, i, hi, w);
+                hi = j + 1;
+            }
+        }
+        for (int i = lo + 1; i < hi; i++) {
+            int x = order[i];
+            int j = i - 1;
+            while (j >= lo && Double.compare(w[order[j]], w[x]) > 0) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = x;
+        }
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    //---------------- nested EdgeArrays class ----------------
+    /** The non-loop edges of a graph as parallel arrays of endpoint numbers and weights. */
+    private static class EdgeArrays<V,E> {
+        private final int size;
+        private final int[] source, target;
+        private final double[] weight;
+        private final Edge<E>[] edges;
+
+        @SuppressWarnings({"unchecked"})
+        public EdgeArrays(Graph<V,E> g, ToDoubleFunction<? super E> weightOf) {
+            Map<Vertex<V>, Integer> index = new HashMap<>(2 * g.numVertices());
+            for (Vertex<V> v : g.vertices())
+                index.put(v, index.size());
+            int m = g.numEdges();
+            source = new int[m];
+            target = new int[m];
+            weight = new double[m];
+            edges = (Edge<E>[]) new Edge[m];
+            int k = 0;
+            for (Edge<E> e : g.edges()) {
+                Vertex<V>[] ends = g.endVertices(e);
+                int u = index.get(ends[0]), v = index.get(ends[1]);
+                if (u == v)
+                    continue;
+                source[k] = u;
+                target[k] = v;
+                weight[k] = weightOf.applyAsDouble(e.getElement());
+                edges[k++] = e;
+            }
+            size = k;
+        }
+    }  //------------ end of EdgeArrays class ------------
+
+
+    //---------------- nested UnionFind class ----------------
+    /** Disjoint sets over the integers 0..n-1, with union by size and path halving. */
+    private static class UnionFind {
+        private final int[] parent;
+        private final int[] size;
+
+        public UnionFind(int n) {
+            parent = new int[n];
+            size = new int[n];
+            for (int i = 0; i < n; i++) {
+                parent[i] = i;
+                size[i] = 1;
+            }
+        }
+
+        /** Returns the representative of the set containing x. */
+        public int find(int x) {
+            while (parent[x] != x) {
+                parent[x] = parent[parent[x]];
+                x = parent[x];
+            }
+            return x;
+        }
+
+        /** Merges the sets of x and y; returns false if they were already the same set. */
+        public boolean union(int x, int y) {
+            int rx = find(x), ry = find(y);
+            if (rx == ry)
+                return false;
+            if (size[rx] < size[ry]) {
+                int t = rx;
+                rx = ry;
+                ry = t;
+            }
+            parent[ry] = rx;
+            size[rx] += size[ry];
+            return true;
+        }
+    }  //------------ end of UnionFind class ------------
+
+
+    /** a main method to demonstrate the algorithms */
+    public static void main(String[] args) {
+        AdjacencyMapGraph<String, Double> graph =
+                new AdjacencyMapGraph<>(false);
+        Vertex<String> u = graph.insertVertex("u");
+        Vertex<String> v = graph.insertVertex("v");
+        Vertex<String> w = graph.insertVertex("w");
+        Vertex<String> z = graph.insertVertex("z");
+        Vertex<String> y = graph.insertVertex("y");
+        graph.insertEdge(u, v, 4.0);
+        graph.insertEdge(u, w, 1.0);
+        graph.insertEdge(v, w, 2.0);
+        graph.insertEdge(w, z, 5.0);
+        graph.insertEdge(v, z, 3.0);
+        System.out.println("Boruvka:");
+        for (Edge<Double> e : boruvka(graph, Double::doubleValue))
+            System.out.println(e.getElement());
+        System.out.println("filter-Kruskal:");
+        PositionalList<Edge<Double>> forest = filterKruskal(graph, Double::doubleValue);
+        for (Edge<Double> e : forest)
+            System.out.println(e.getElement());
+        System.out.println(toGraph(graph, forest));
+    }
+
+}
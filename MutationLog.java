@@ -0,0 +1,308 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of records with group commit.
+ *
+ * Every record is framed as its length and CRC-32 followed by its bytes. Appending a record
+ * only copies it into an in-memory buffer and returns its sequence number, the offset at which
+ * the record ends. A writer that needs the record on disk calls {@link #awaitDurable}, which
+ * hands the request to the commit thread of the log and waits. That thread writes everything
+ * buffered so far through the FileChannel and forces it to disk, while the writers that append
+ * in the meantime wait for the next round. A single fsync thus commits the records of all
+ * concurrent writers. Only the commit thread touches the channel, so interrupting a writer,
+ * as thread pools do on cancellation, cannot close it; the writer keeps its interrupt status.
+ *
+ * With a positive sync interval the commit thread also commits on that schedule, so writers
+ * that do not wait still lose at most that much time of mutations on a crash. Once a write or
+ * fsync fails, the log rejects every further record; its owner recovers by starting a new log.
+ */
+public class MutationLog implements Closeable {
+
+    private static final int HEADER = 8;       // record length and CRC-32
+
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition committed = lock.newCondition();
+    private final Condition requested = lock.newCondition();
+    private final long syncIntervalNanos;
+    private final Thread committer;
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private final CRC32 crc = new CRC32();
+    private long appended;                     // sequence number of the last appended record
+    private long durable;                      // sequence number of the last record on disk
+    private long wanted;                       // sequence number writers wait for
+    private boolean closed;
+    private boolean stopped;                   // the commit thread has finished
+    private boolean failedBeforeClose;
+    private IOException failure;
+    private long syncs;
+
+    /**
+     * Opens the log in the given file for appending, creating it if needed. The file must end
+     * with a complete record; see {@link #replay} for truncating a torn tail.
+     *
+     * @param file the log file
+     * @param syncIntervalMillis period of the background commits, or 0 for none
+     * @throws IOException if the file cannot be opened
+     */
+    public MutationLog(Path file, long syncIntervalMillis) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ);
+        appended = durable = wanted = channel.size();
+        channel.position(appended);
+        syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        committer = new Thread(this::commitLoop, "mutation-log-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Appends a record to the log and returns its sequence number.
+     * The record is durable once {@link #awaitDurable} has returned for that number.
+     * @throws IOException if the log is closed or an earlier commit failed
+     */
+    public long append(byte[] record, int offset, int length) throws IOException {
+        lock.lock();
+        try {
+            check();
+            if (pending.remaining() < HEADER + length)
+                pending = grow(pending, HEADER + length);
+            crc.reset();
+            crc.update(record, offset, length);
+            pending.putInt(length);
+            pending.putInt((int) crc.getValue());
+            pending.put(record, offset, length);
+            appended += HEADER + length;
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every record up to the given sequence number is on disk.
+     * @throws IOException if writing or forcing the log failed
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        lock.lock();
+        try {
+            if (sequence > wanted) {
+                wanted = sequence;
+                requested.signal();
+            }
+            while (durable < sequence) {
+                if (failure != null) throw new IOException("an earlier commit failed", failure);
+                if (stopped) throw new IOException("log is closed");
+                committed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs on the commit thread: writes and forces the buffered records whenever a writer waits
+     * for them or the sync interval has passed, until the log is closed or has failed.
+     */
+    private void commitLoop() {
+        lock.lock();
+        try {
+            while (failure == null) {
+                if (wanted <= durable && !closed) {
+                    if (syncIntervalNanos > 0)
+                        requested.awaitNanos(syncIntervalNanos);
+                    else
+                        requested.await();
+                }
+                if (appended > durable) {
+                    ByteBuffer batch = pending;
+                    pending = spare;
+                    long upTo = appended;
+                    lock.unlock();
+                    IOException error = null;
+                    try {
+                        batch.flip();
+                        while (batch.hasRemaining())
+                            channel.write(batch);
+                        channel.force(false);
+                    } catch (IOException e) {
+                        error = e;
+                    } finally {
+                        lock.lock();
+                    }
+                    batch.clear();
+                    spare = batch;
+                    if (error != null)
+                        failure = error;
+                    else {
+                        durable = upTo;
+                        syncs++;
+                    }
+                    committed.signalAll();
+                } else if (closed)
+                    break;
+            }
+        } catch (InterruptedException e) {
+            // only close() stops the thread, by setting closed
+        } finally {
+            stopped = true;
+            committed.signalAll();
+            lock.unlock();
+        }
+    }
+
+    /** Blocks until every record appended so far is on disk. */
+    public void sync() throws IOException {
+        long sequence;
+        lock.lock();
+        try {
+            sequence = appended;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(sequence);
+    }
+
+    /** Returns the size of the log in bytes, including records not yet on disk. */
+    public long size() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of fsync calls made so far. */
+    public long syncCount() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns whether a write or fsync has failed, after which the log rejects every record. */
+    public boolean hasFailed() {
+        lock.lock();
+        try {
+            return failure != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits the buffered records and closes the file. A failed log is closed without
+     * committing, and its failure is not reported again.
+     * @throws IOException if the last commit or closing the file fails
+     */
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+            failedBeforeClose = failure != null;
+            requested.signal();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                committer.join();                      // commits what is left, then stops
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        IOException error;
+        lock.lock();
+        try {
+            error = failedBeforeClose ? null : failure;
+        } finally {
+            lock.unlock();
+        }
+        channel.close();
+        if (error != null)
+            throw new IOException("closing the log failed", error);
+    }
+
+    /**
+     * Reads the records of a log file in order and hands each one to the handler. Reading stops
+     * at the first incomplete or corrupt record, which a crash during a write may leave behind;
+     * the file is truncated to the records before it.
+     *
+     * @return the number of records read
+     * @throws IOException if the file cannot be read
+     */
+    public static long replay(Path file, Consumer<ByteBuffer> handler) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            CRC32 check = new CRC32();
+            long position = 0, records = 0;
+            while (position + HEADER <= size) {
+                header.clear();
+                readFully(in, header, position);
+                header.flip();
+                int length = header.getInt();
+                int sum = header.getInt();
+                if (length < 0 || position + HEADER + length > size)
+                    break;
+                ByteBuffer record = ByteBuffer.allocate(length);
+                readFully(in, record, position + HEADER);
+                check.reset();
+                check.update(record.array(), 0, length);
+                if ((int) check.getValue() != sum)
+                    break;
+                record.flip();
+                handler.accept(record);
+                position += HEADER + length;
+                records++;
+            }
+            if (position < size) {
+                in.truncate(position);
+                in.force(true);
+            }
+            return records;
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = in.read(buffer, position);
+            if (n < 0)
+                throw new IOException("unexpected end of log");
+            position += n;
+        }
+    }
+
+    private void check() throws IOException {
+        if (failure != null) throw new IOException("an earlier commit failed", failure);
+        if (closed) throw new IOException("log is closed");
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + needed));
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+}
@@ -0,0 +1,320 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A graph that caches the k-hop neighborhoods of its vertices in front of another graph.
+ *
+ * All Graph methods are forwarded to the underlying graph. Mutations made through this class
+ * drop exactly the cached neighborhoods they could change: inserting or removing an edge from
+ * u only matters to a neighborhood of radius k when u lies less than k hops from its center,
+ * and removing a vertex only matters to the neighborhoods that contain it. A reverse index
+ * from vertex to the neighborhoods containing it finds those entries without a scan.
+ * The graph must not be modified other than through this class while it is cached.
+ *
+ * Entries are evicted in least recently used order once the total weight, the number of
+ * vertices held by all cached neighborhoods, exceeds the configured maximum.
+ */
+public class NeighborhoodCache<V,E> implements Graph<V,E> {
+
+    private final Graph<V,E> graph;
+    private final boolean directed;
+    private final long maxWeight;
+    private final LinkedHashMap<Key<V>, Map<Vertex<V>, Integer>> entries =
+            new LinkedHashMap<>(16, 0.75f, true);     // access order, eldest entry first
+    private final Map<Vertex<V>, Map<Key<V>, Integer>> containing = new HashMap<>();  // vertex -> hops per entry
+    private long weight;
+    private long hits, misses, evictions, invalidations;
+
+    /**
+     * Constructs a cache in front of graph g.
+     *
+     * @param g the graph to forward to
+     * @param directed whether g is a directed graph
+     * @param maxWeight the maximum number of vertices held by all cached neighborhoods together
+     * @throws IllegalArgumentException if maxWeight is negative
+     */
+    public NeighborhoodCache(Graph<V,E> g, boolean directed, long maxWeight)
+            throws IllegalArgumentException {
+        if (maxWeight < 0) throw new IllegalArgumentException("maxWeight must not be negative");
+        this.graph = g;
+        this.directed = directed;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the vertices that can be reached from v in at least one and at most k hops.
+     * @throws IllegalArgumentException if v is not a valid vertex or k is negative
+     */
+    public Set<Vertex<V>> neighborhood(Vertex<V> v, int k) throws IllegalArgumentException {
+        return distances(v, k).keySet();
+    }
+
+    /**
+     * Returns a map from each vertex reachable from v in at least one and at most k hops to
+     * its number of hops from v. The map is read-only and iterates in order of distance.
+     * @throws IllegalArgumentException if v is not a valid vertex or k is negative
+     */
+    public Map<Vertex<V>, Integer> distances(Vertex<V> v, int k) throws IllegalArgumentException {
+        if (k < 0) throw new IllegalArgumentException("k must not be negative");
+        Key<V> key = new Key<>(v, k);
+        Map<Vertex<V>, Integer> cached = entries.get(key);
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+        misses++;
+        Map<Vertex<V>, Integer> result = Collections.unmodifiableMap(explore(v, k));
+        long w = result.size() + 1;
+        if (w <= maxWeight) {
+            entries.put(key, result);
+            weight += w;
+            register(v, key, 0);
+            for (Map.Entry<Vertex<V>, Integer> entry : result.entrySet())
+                register(entry.getKey(), key, entry.getValue());
+            evict();
+        }
+        return result;
+    }
+
+    /** Returns the number of neighborhood queries answered from the cache. */
+    public long hitCount() { return hits; }
+
+    /** Returns the number of neighborhood queries that had to explore the graph. */
+    public long missCount() { return misses; }
+
+    /** Returns the number of entries evicted to stay within the maximum weight. */
+    public long evictionCount() { return evictions; }
+
+    /** Returns the number of entries dropped because a mutation could change them. */
+    public long invalidationCount() { return invalidations; }
+
+    /** Returns the number of cached neighborhoods. */
+    public int cachedEntries() { return entries.size(); }
+
+    /** Returns the current total weight of the cached neighborhoods. */
+    public long cachedWeight() { return weight; }
+
+    /** Drops every cached neighborhood. */
+    public void clear() {
+        entries.clear();
+        containing.clear();
+        weight = 0;
+    }
+
+    /** Breadth-first exploration of the vertices at most k hops away from s. */
+    private Map<Vertex<V>, Integer> explore(Vertex<V> s, int k) {
+        Map<Vertex<V>, Integer> dist = new LinkedHashMap<>();
+        graph.outDegree(s);                         // validates s
+        Set<Vertex<V>> known = new HashSet<>();
+        known.add(s);
+        PositionalList<Vertex<V>> level = new LinkedPositionalList<>();
+        level.addLast(s);
+        for (int hop = 1; hop <= k && !level.isEmpty(); hop++) {
+            PositionalList<Vertex<V>> nextLevel = new LinkedPositionalList<>();
+            for (Vertex<V> u : level)
+                for (Edge<E> e : graph.outgoingEdges(u)) {
+                    Vertex<V> v = graph.opposite(u, e);
+                    if (known.add(v)) {
+                        dist.put(v, hop);
+                        nextLevel.addLast(v);
+                    }
+                }
+            level = nextLevel;
+        }
+        return dist;
+    }
+
+    private void register(Vertex<V> v, Key<V> key, int hops) {
+        containing.computeIfAbsent(v, x -> new HashMap<>()).put(key, hops);
+    }
+
+    /** Removes an entry from the cache and from the reverse index. */
+    private void drop(Key<V> key) {
+        Map<Vertex<V>, Integer> dist = entries.remove(key);
+        if (dist == null)
+            return;
+        weight -= dist.size() + 1;
+        unregister(key.vertex, key);
+        for (Vertex<V> u : dist.keySet())
+            unregister(u, key);
+    }
+
+    private void unregister(Vertex<V> v, Key<V> key) {
+        Map<Key<V>, Integer> keys = containing.get(v);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty())
+                containing.remove(v);
+        }
+    }
+
+    private void evict() {
+        while (weight > maxWeight && !entries.isEmpty()) {
+            drop(entries.keySet().iterator().next());   // least recently used
+            evictions++;
+        }
+    }
+
+    /** Drops the entries in which an edge leaving u could add or remove a vertex. */
+    private void invalidateThrough(Vertex<V> u) {
+        Map<Key<V>, Integer> keys = containing.get(u);
+        if (keys == null)
+            return;
+        for (Map.Entry<Key<V>, Integer> entry : new ArrayList<>(keys.entrySet())) {
+            Key<V> key = entry.getKey();
+            if (entry.getValue() < key.k) {
+                drop(key);
+                invalidations++;
+            }
+        }
+    }
+
+    /** Drops every entry containing v. */
+    private void invalidateContaining(Vertex<V> v) {
+        Map<Key<V>, Integer> keys = containing.get(v);
+        if (keys == null)
+            return;
+        for (Key<V> key : new ArrayList<>(keys.keySet())) {
+            drop(key);
+            invalidations++;
+        }
+    }
+
+    /** Returns the number of vertices of the graph */
+    public int numVertices() { return graph.numVertices(); }
+
+    /** Returns the number of edges of the graph */
+    public int numEdges() { return graph.numEdges(); }
+
+    /** Returns the vertices of the graph as an iterable collection */
+    public Iterable<Vertex<V>> vertices() { return graph.vertices(); }
+
+    /** Returns the edges of the graph as an iterable collection */
+    public Iterable<Edge<E>> edges() { return graph.edges(); }
+
+    /**
+     * Returns the number of edges for which vertex v is the origin.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public int outDegree(Vertex<V> v) throws IllegalArgumentException { return graph.outDegree(v); }
+
+    /**
+     * Returns the number of edges for which vertex v is the destination.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public int inDegree(Vertex<V> v) throws IllegalArgumentException { return graph.inDegree(v); }
+
+    /**
+     * Returns an iterable collection of edges for which vertex v is the origin.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public Iterable<Edge<E>> outgoingEdges(Vertex<V> v) throws IllegalArgumentException {
+        return graph.outgoingEdges(v);
+    }
+
+    /**
+     * Returns an iterable collection of edges for which vertex v is the destination.
+     * @throws IllegalArgumentException if v is not a valid vertex
+     */
+    public Iterable<Edge<E>> incomingEdges(Vertex<V> v) throws IllegalArgumentException {
+        return graph.incomingEdges(v);
+    }
+
+    /** Returns the edge from u to v, or null if they are not adjacent. */
+    public Edge<E> getEdge(Vertex<V> u, Vertex<V> v) throws IllegalArgumentException {
+        return graph.getEdge(u, v);
+    }
+
+    /** Returns the vertices of edge e as an array of length two. */
+    public Vertex<V>[] endVertices(Edge<E> e) throws IllegalArgumentException {
+        return graph.endVertices(e);
+    }
+
+    /** Returns the vertex that is opposite vertex v on edge e. */
+    public Vertex<V> opposite(Vertex<V> v, Edge<E> e) throws IllegalArgumentException {
+        return graph.opposite(v, e);
+    }
+
+    /** Inserts and returns a new vertex with the given element. */
+    public Vertex<V> insertVertex(V element) {
+        return graph.insertVertex(element);    // an isolated vertex changes no neighborhood
+    }
+
+    /**
+     * Inserts and returns a new edge between vertices u and v, storing given element.
+     * @throws IllegalArgumentException if u or v are invalid vertices, or if an edge already exists between u and v.
+     */
+    public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element) throws IllegalArgumentException {
+        Edge<E> e = graph.insertEdge(u, v, element);
+        invalidateThrough(u);
+        if (!directed)
+            invalidateThrough(v);
+        return e;
+    }
+
+    /** Removes a vertex and all its incident edges from the graph. */
+    public void removeVertex(Vertex<V> v) throws IllegalArgumentException {
+        graph.removeVertex(v);
+        invalidateContaining(v);                // every path through v ran through an entry holding v
+    }
+
+    /** Removes an edge from the graph. */
+    public void removeEdge(Edge<E> e) throws IllegalArgumentException {
+        Vertex<V>[] ends = graph.endVertices(e);
+        graph.removeEdge(e);
+        invalidateThrough(ends[0]);
+        if (!directed)
+            invalidateThrough(ends[1]);
+    }
+
+    /** Returns a string representation of the underlying graph. */
+    public String toString() { return graph.toString(); }
+
+    //---------------- nested Key class ----------------
+    /** Identifies the neighborhood of radius k around a vertex. */
+    private static class Key<V> {
+        private final Vertex<V> vertex;
+        private final int k;
+
+        public Key(Vertex<V> vertex, int k) {
+            this.vertex = vertex;
+            this.k = k;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key<?> other = (Key<?>) o;
+            return vertex == other.vertex && k == other.k;
+        }
+
+        public int hashCode() { return 31 * System.identityHashCode(vertex) + k; }
+    }  //------------ end of Key class ------------
+
+
+    /** a main method to demonstrate the cache */
+    public static void main(String[] args) {
+        NeighborhoodCache<String, String> graph =
+                new NeighborhoodCache<>(new AdjacencyMapGraph<>(false), false, 100);
+        Vertex<String> u = graph.insertVertex("u");
+        Vertex<String> v = graph.insertVertex("v");
+        Vertex<String> w = graph.insertVertex("w");
+        Vertex<String> z = graph.insertVertex("z");
+        graph.insertEdge(u, v, "e");
+        graph.insertEdge(v, w, "f");
+        graph.insertEdge(w, z, "h");
+        for (Vertex<String> k : graph.neighborhood(u, 2))
+            System.out.println(k.getElement());
+        graph.neighborhood(u, 2);
+        graph.neighborhood(z, 1);
+        graph.insertEdge(u, z, "g");
+        System.out.println("2-hop of u: " + graph.neighborhood(u, 2).size());
+        System.out.println(graph.hitCount() + " hits, " + graph.missCount() + " misses, "
+                + graph.invalidationCount() + " invalidations");
+    }
+
+}
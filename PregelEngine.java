@@ -0,0 +1,498 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * A vertex-centric, bulk-synchronous compute engine in the style of Pregel.
+ *
+ * The vertices of the graph are hash-partitioned over a number of in-process shards. In every
+ * superstep each shard calls the user's {@link VertexProgram#compute} for its active vertices,
+ * handing over the messages sent to them in the previous superstep. Messages for vertices of
+ * the same shard go straight into its next inbox; messages for other shards are batched in a
+ * buffer per pair of shards and delivered in a separate phase once every shard has finished
+ * computing, so no shard ever writes into the state of another one while computing. An
+ * optional combiner merges the messages for a vertex into one as they arrive.
+ *
+ * A vertex that votes to halt is skipped until it receives a message. The run ends when every
+ * vertex has halted and no message is in flight, or after the given number of supersteps.
+ * Shards run as tasks on an ExecutorService, which may use platform or virtual threads.
+ * The graph must not be modified while a run is in progress.
+ */
+public class PregelEngine<V,E,S,M> {
+
+    private final Graph<V,E> graph;
+    private final int numShards;
+    private final BinaryOperator<M> combiner;
+    private final ExecutorService executor;
+
+    /**
+     * Constructs an engine that runs its shards on a fixed thread pool created for each run.
+     *
+     * @param g Graph instance
+     * @param numShards number of shards the vertices are partitioned over
+     * @param combiner merges two messages for the same vertex, or null to keep all of them
+     * @throws IllegalArgumentException if numShards is not positive
+     */
+    public PregelEngine(Graph<V,E> g, int numShards, BinaryOperator<M> combiner)
+            throws IllegalArgumentException {
+        this(g, numShards, combiner, null);
+    }
+
+    /**
+     * Constructs an engine that runs its shards on the given executor, which stays owned by
+     * the caller. Pass {@code Executors.newVirtualThreadPerTaskExecutor()} for virtual threads.
+     *
+     * @param g Graph instance
+     * @param numShards number of shards the vertices are partitioned over
+     * @param combiner merges two messages for the same vertex, or null to keep all of them
+     * @param executor runs the shard tasks of every phase
+     * @throws IllegalArgumentException if numShards is not positive
+     */
+    public PregelEngine(Graph<V,E> g, int numShards, BinaryOperator<M> combiner, ExecutorService executor)
+            throws IllegalArgumentException {
+        if (numShards < 1) throw new IllegalArgumentException("numShards must be positive");
+        this.graph = g;
+        this.numShards = numShards;
+        this.combiner = combiner;
+        this.executor = executor;
+    }
+
+    /**
+     * Runs a vertex program until every vertex has halted or maxSupersteps have been executed.
+     *
+     * @param program the computation run for each active vertex in each superstep
+     * @param initialValue gives the value of each vertex before the first superstep
+     * @param maxSupersteps upper bound on the number of supersteps
+     * @return the final vertex values together with statistics for every superstep
+     */
+    public Result<V,S> run(VertexProgram<V,E,S,M> program, Function<Vertex<V>, S> initialValue, int maxSupersteps) {
+        ExecutorService pool = executor != null ? executor : Executors.newFixedThreadPool(numShards);
+        try {
+            return new Run(program, initialValue).execute(pool, maxSupersteps);
+        } finally {
+            if (executor == null)
+                pool.shutdown();
+        }
+    }
+
+    /** Spreads vertex numbers over the shards. */
+    private int shardOf(int id) {
+        int h = id * 0x9E3779B9;                 // Fibonacci hashing
+        return (int) (((h ^ (h >>> 16)) & 0xFFFFFFFFL) % numShards);
+    }
+
+    //---------------- nested VertexProgram interface ----------------
+    /** The user supplied computation of a vertex in one superstep. */
+    public interface VertexProgram<V,E,S,M> {
+        /**
+         * Computes the new value of context.vertex() from the messages it received, sending
+         * messages to other vertices and voting to halt through the context.
+         */
+        void compute(Context<V,E,S,M> context, Iterable<M> messages);
+    }  //------------ end of VertexProgram interface ------------
+
+
+    //---------------- nested Context interface ----------------
+    /** The view of the engine available to a vertex while it computes. */
+    public interface Context<V,E,S,M> {
+        /** Returns the number of the current superstep, starting at 0. */
+        int superstep();
+
+        /** Returns the graph being computed on. */
+        Graph<V,E> graph();
+
+        /** Returns the vertex being computed. */
+        Vertex<V> vertex();
+
+        /** Returns the value of the vertex being computed. */
+        S getValue();
+
+        /** Replaces the value of the vertex being computed. */
+        void setValue(S value);
+
+        /**
+         * Sends a message to vertex target, delivered in the next superstep.
+         * @throws IllegalArgumentException if target is not a vertex of the graph
+         */
+        void sendMessage(Vertex<V> target, M message) throws IllegalArgumentException;
+
+        /** Sends a message along every outgoing edge of the vertex being computed. */
+        void sendToNeighbors(M message);
+
+        /** Deactivates the vertex being computed until it receives a message. */
+        void voteToHalt();
+    }  //------------ end of Context interface ------------
+
+
+    //---------------- nested Run class ----------------
+    /** The state of one execution of a vertex program. */
+    private class Run {
+        private final VertexProgram<V,E,S,M> program;
+        private final Vertex<V>[] vertices;
+        private final Map<Vertex<V>, Integer> ids;
+        private final int[] shard, local;        // shard and index within it, by vertex number
+        private final List<Shard> shards = new ArrayList<>();
+        private final MessageBuffer[][] buffers; // [source shard][target shard]
+        private int superstep;
+
+        @SuppressWarnings({"unchecked"})
+        public Run(VertexProgram<V,E,S,M> program, Function<Vertex<V>, S> initialValue) {
+            this.program = program;
+            int n = graph.numVertices();
+            vertices = (Vertex<V>[]) new Vertex[n];
+            ids = new HashMap<>(2 * n);
+            shard = new int[n];
+            local = new int[n];
+            int[] sizes = new int[numShards];
+            int k = 0;
+            for (Vertex<V> v : graph.vertices()) {
+                vertices[k] = v;
+                ids.put(v, k);
+                shard[k] = shardOf(k);
+                local[k] = sizes[shard[k]]++;
+                k++;
+            }
+            for (int s = 0; s < numShards; s++)
+                shards.add(new Shard(s, sizes[s]));
+            for (int id = 0; id < n; id++) {
+                Shard sh = shards.get(shard[id]);
+                sh.members[local[id]] = id;
+                sh.values[local[id]] = initialValue.apply(vertices[id]);
+            }
+            buffers = new MessageBuffer[numShards][numShards];
+            for (int s = 0; s < numShards; s++)
+                for (int t = 0; t < numShards; t++)
+                    if (s != t)
+                        buffers[s][t] = new MessageBuffer();
+        }
+
+        @SuppressWarnings({"unchecked"})
+        public Result<V,S> execute(ExecutorService pool, int maxSupersteps) {
+            List<SuperstepStats> stats = new ArrayList<>();
+            List<Callable<Void>> compute = new ArrayList<>();
+            List<Callable<Void>> deliver = new ArrayList<>();
+            for (Shard sh : shards) {
+                compute.add(() -> { sh.compute(); return null; });
+                deliver.add(() -> { sh.deliver(); return null; });
+            }
+            for (superstep = 0; superstep < maxSupersteps; superstep++) {
+                long start = System.nanoTime();
+                invokeAll(pool, compute);        // barrier: every shard has computed
+                invokeAll(pool, deliver);        // barrier: every message is in its inbox
+                long active = 0, sent = 0, crossShard = 0;
+                boolean pending = false;
+                for (Shard sh : shards) {
+                    active += sh.computed;
+                    sent += sh.sent;
+                    crossShard += sh.sentAcross;
+                    pending |= sh.swapInboxes();
+                }
+                stats.add(new SuperstepStats(superstep, System.nanoTime() - start, active, sent, crossShard));
+                if (!pending && allHalted())
+                    break;
+            }
+            Map<Vertex<V>, S> values = new HashMap<>(2 * vertices.length);
+            for (int id = 0; id < vertices.length; id++)
+                values.put(vertices[id], (S) shards.get(shard[id]).values[local[id]]);
+            return new Result<>(values, stats);
+        }
+
+        private boolean allHalted() {
+            for (Shard sh : shards)
+                for (boolean h : sh.halted)
+                    if (!h)
+                        return false;
+            return true;
+        }
+
+        private void invokeAll(ExecutorService pool, List<Callable<Void>> tasks) {
+            try {
+                for (Future<Void> f : pool.invokeAll(tasks))
+                    f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("superstep interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        //---------------- nested Shard class ----------------
+        /** A partition of the vertices with its values, inboxes and compute context. */
+        private class Shard implements Context<V,E,S,M> {
+            private final int index;
+            private final int[] members;         // vertex numbers, by local index
+            private final Object[] values;
+            private final boolean[] halted;
+            private Inbox inbox, next;
+            private long computed, sent, sentAcross;
+            private int current;                 // local index of the vertex being computed
+
+            public Shard(int index, int size) {
+                this.index = index;
+                members = new int[size];
+                values = new Object[size];
+                halted = new boolean[size];
+                inbox = new Inbox(size);
+                next = new Inbox(size);
+            }
+
+            /** Calls the program for every vertex that is active or has received messages. */
+            public void compute() {
+                computed = sent = sentAcross = 0;
+                for (current = 0; current < members.length; current++) {
+                    boolean hasMessages = inbox.has(current);
+                    if (halted[current] && !hasMessages)
+                        continue;
+                    halted[current] = false;
+                    computed++;
+                    program.compute(this, inbox.take(current));
+                }
+            }
+
+            /** Moves the messages batched for this shard by every other shard into its next inbox. */
+            @SuppressWarnings({"unchecked"})
+            public void deliver() {
+                for (int s = 0; s < numShards; s++) {
+                    MessageBuffer buffer = buffers[s][index];
+                    if (buffer == null)
+                        continue;
+                    for (int i = 0; i < buffer.size; i++)
+                        next.add(local[buffer.targets[i]], (M) buffer.messages[i]);
+                    buffer.clear();
+                }
+            }
+
+            /** Makes the next inbox current; returns whether it holds any message. */
+            public boolean swapInboxes() {
+                Inbox t = inbox;
+                inbox = next;
+                next = t;
+                return inbox.count > 0;
+            }
+
+            public int superstep() { return superstep; }
+
+            public Graph<V,E> graph() { return graph; }
+
+            public Vertex<V> vertex() { return vertices[members[current]]; }
+
+            @SuppressWarnings({"unchecked"})
+            public S getValue() { return (S) values[current]; }
+
+            public void setValue(S value) { values[current] = value; }
+
+            public void sendMessage(Vertex<V> target, M message) throws IllegalArgumentException {
+                Integer id = ids.get(target);
+                if (id == null) throw new IllegalArgumentException("Invalid vertex");
+                send(id, message);
+            }
+
+            public void sendToNeighbors(M message) {
+                Vertex<V> v = vertices[members[current]];
+                for (Edge<E> e : graph.outgoingEdges(v))
+                    send(ids.get(graph.opposite(v, e)), message);
+            }
+
+            public void voteToHalt() { halted[current] = true; }
+
+            private void send(int id, M message) {
+                sent++;
+                if (shard[id] == index)
+                    next.add(local[id], message);
+                else {
+                    sentAcross++;
+                    buffers[index][shard[id]].add(id, message);
+                }
+            }
+        }  //------------ end of Shard class ------------
+
+
+        //---------------- nested Inbox class ----------------
+        /** The messages for the vertices of a shard, combined into one per vertex if possible. */
+        private class Inbox {
+            private final Object[] combined;
+            private final boolean[] present;
+            private final List<M>[] lists;
+            private int count;                   // number of vertices with messages
+
+            @SuppressWarnings({"unchecked"})
+            public Inbox(int size) {
+                if (combiner != null) {
+                    combined = new Object[size];
+                    present = new boolean[size];
+                    lists = null;
+                } else {
+                    combined = null;
+                    present = null;
+                    lists = (List<M>[]) new List[size];
+                }
+            }
+
+            public boolean has(int i) {
+                return combiner != null ? present[i] : lists[i] != null;
+            }
+
+            @SuppressWarnings({"unchecked"})
+            public void add(int i, M message) {
+                if (combiner != null) {
+                    if (present[i])
+                        combined[i] = combiner.apply((M) combined[i], message);
+                    else {
+                        combined[i] = message;
+                        present[i] = true;
+                        count++;
+                    }
+                } else {
+                    if (lists[i] == null) {
+                        lists[i] = new ArrayList<>(2);
+                        count++;
+                    }
+                    lists[i].add(message);
+                }
+            }
+
+            /** Removes and returns the messages for local vertex i. */
+            @SuppressWarnings({"unchecked"})
+            public Iterable<M> take(int i) {
+                if (!has(i))
+                    return Collections.emptyList();
+                count--;
+                if (combiner != null) {
+                    M m = (M) combined[i];
+                    combined[i] = null;
+                    present[i] = false;
+                    return Collections.singletonList(m);
+                }
+                List<M> l = lists[i];
+                lists[i] = null;
+                return l;
+            }
+        }  //------------ end of Inbox class ------------
+    }  //------------ end of Run class ------------
+
+
+    //---------------- nested MessageBuffer class ----------------
+    /** Messages batched by one shard for the vertices of another shard. */
+    private static class MessageBuffer {
+        private int[] targets = new int[64];
+        private Object[] messages = new Object[64];
+        private int size = 0;
+
+        public void add(int target, Object message) {
+            if (size == targets.length) {
+                targets = Arrays.copyOf(targets, 2 * size);
+                messages = Arrays.copyOf(messages, 2 * size);
+            }
+            targets[size] = target;
+            messages[size++] = message;
+        }
+
+        public void clear() {
+            Arrays.fill(messages, 0, size, null);
+            size = 0;
+        }
+    }  //------------ end of MessageBuffer class ------------
+
+
+    //---------------- nested SuperstepStats class ----------------
+    /** Timing and message counts of one superstep. */
+    public static class SuperstepStats {
+        private final int superstep;
+        private final long nanos, activeVertices, messages, crossShardMessages;
+
+        private SuperstepStats(int superstep, long nanos, long activeVertices, long messages, long crossShardMessages) {
+            this.superstep = superstep;
+            this.nanos = nanos;
+            this.activeVertices = activeVertices;
+            this.messages = messages;
+            this.crossShardMessages = crossShardMessages;
+        }
+
+        /** Returns the number of the superstep. */
+        public int superstep() { return superstep; }
+
+        /** Returns the wall clock time of the superstep, barriers included, in nanoseconds. */
+        public long nanos() { return nanos; }
+
+        /** Returns the number of vertices computed in the superstep. */
+        public long activeVertices() { return activeVertices; }
+
+        /** Returns the number of messages sent in the superstep, before combining. */
+        public long messages() { return messages; }
+
+        /** Returns the number of messages sent to a vertex of another shard. */
+        public long crossShardMessages() { return crossShardMessages; }
+
+        public String toString() {
+            return String.format("superstep %d: %.3f ms, %d active, %d messages (%d cross-shard)",
+                    superstep, nanos / 1e6, activeVertices, messages, crossShardMessages);
+        }
+    }  //------------ end of SuperstepStats class ------------
+
+
+    //---------------- nested Result class ----------------
+    /** The vertex values at the end of a run, with statistics for every superstep. */
+    public static class Result<V,S> {
+        private final Map<Vertex<V>, S> values;
+        private final List<SuperstepStats> supersteps;
+
+        private Result(Map<Vertex<V>, S> values, List<SuperstepStats> supersteps) {
+            this.values = values;
+            this.supersteps = supersteps;
+        }
+
+        /** Returns the final value of vertex v. */
+        public S value(Vertex<V> v) { return values.get(v); }
+
+        /** Returns the final values of all vertices. */
+        public Map<Vertex<V>, S> values() { return Collections.unmodifiableMap(values); }
+
+        /** Returns the statistics of the supersteps, in the order they ran. */
+        public List<SuperstepStats> supersteps() { return Collections.unmodifiableList(supersteps); }
+    }  //------------ end of Result class ------------
+
+
+    /** a main method demonstrating single-source hop distances with a min combiner */
+    public static void main(String[] args) {
+        AdjacencyMapGraph<String, String> graph =
+                new AdjacencyMapGraph<>(false);
+        Vertex<String> u = graph.insertVertex("u");
+        Vertex<String> v = graph.insertVertex("v");
+        Vertex<String> w = graph.insertVertex("w");
+        Vertex<String> z = graph.insertVertex("z");
+        graph.insertEdge(u, v, "e");
+        graph.insertEdge(u, w, "g");
+        graph.insertEdge(v, w, "f");
+        graph.insertEdge(w, z, "h");
+        PregelEngine<String, String, Integer, Integer> engine =
+                new PregelEngine<>(graph, 2, Math::min);
+        Result<String, Integer> result = engine.run((context, messages) -> {
+            int best = context.vertex() == u ? 0 : context.getValue();
+            for (int m : messages)
+                best = Math.min(best, m);
+            if (best < context.getValue()) {
+                context.setValue(best);
+                context.sendToNeighbors(best + 1);
+            }
+            context.voteToHalt();
+        }, x -> Integer.MAX_VALUE, 100);
+        for (Vertex<String> k : graph.vertices())
+            System.out.println(k.getElement() + ": " + result.value(k));
+        for (SuperstepStats s : result.supersteps())
+            System.out.println(s);
+    }
+
+}
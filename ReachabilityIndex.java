@@ -0,0 +1,420 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * An index answering whether a vertex can be reached from another one without searching the graph.
+ *
+ * The strongly connected components of the graph are condensed into a DAG whose components
+ * are numbered in reverse topological order, so a component can only reach components with a
+ * smaller number. On top of that, every component gets a number of GRAIL interval labels: each
+ * label is the post-order rank of the component in a randomized DFS of the DAG, together with
+ * the lowest rank found below it. When u reaches v the interval of v lies within the interval
+ * of u, so most negative queries are answered by the labels alone and the remaining ones by a
+ * DFS of the DAG that prunes every component whose labels exclude the target.
+ *
+ * Edges inserted after the index was built are reported through {@link #edgesInserted}. Edges
+ * the index already implies are dropped, the others are kept as a short overlay that queries
+ * take into account until too many of them have gathered and the index is rebuilt.
+ * Removing vertices or edges requires a {@link #rebuild()}.
+ * Like the graphs it indexes, an index is not safe for concurrent use.
+ */
+public class ReachabilityIndex<V,E> {
+
+    /** Default number of interval labels per component. */
+    public static final int DEFAULT_LABELS = 3;
+
+    /** Default number of overlay edges kept before the index is rebuilt. */
+    public static final int DEFAULT_MAX_PENDING = 64;
+
+    private final Graph<V,E> graph;
+    private final int numLabels;
+    private final int maxPending;
+    private final Random random;
+
+    private Map<Vertex<V>, Integer> component;   // vertex -> component number
+    private int numComponents;
+    private int[] dagOffsets, dagTargets;        // condensed DAG in compressed sparse row form
+    private int[] low, post;                     // labels, numLabels consecutive entries per component
+    private int[] visited;                       // query stamp per component, for the fallback search
+    private int stamp;
+    private int[] stack;
+    private List<int[]> pending = new ArrayList<>();   // overlay edges between components
+
+    private long buildNanos;
+    private long queries, fallbacks, fallbackVisits, queryNanos;
+
+    /** Builds an index over the directed graph g with the default number of labels. */
+    public ReachabilityIndex(Graph<V,E> g) {
+        this(g, DEFAULT_LABELS, DEFAULT_MAX_PENDING, new Random());
+    }
+
+    /**
+     * Builds an index over the directed graph g.
+     *
+     * @param g Graph instance
+     * @param numLabels number of randomized interval labels per component
+     * @param maxPending number of overlay edges kept before the index is rebuilt
+     * @param random source of the randomized traversal orders
+     * @throws IllegalArgumentException if numLabels is not positive or maxPending is negative
+     */
+    public ReachabilityIndex(Graph<V,E> g, int numLabels, int maxPending, Random random)
+            throws IllegalArgumentException {
+        if (numLabels < 1) throw new IllegalArgumentException("numLabels must be positive");
+        if (maxPending < 0) throw new IllegalArgumentException("maxPending must not be negative");
+        this.graph = g;
+        this.numLabels = numLabels;
+        this.maxPending = maxPending;
+        this.random = random;
+        rebuild();
+    }
+
+    /**
+     * Returns whether there is a directed path from u to v (a vertex always reaches itself).
+     * @throws IllegalArgumentException if u or v are not vertices of the indexed graph
+     */
+    public boolean reachable(Vertex<V> u, Vertex<V> v) throws IllegalArgumentException {
+        long start = System.nanoTime();
+        boolean result = reachable(validate(u), validate(v));
+        queryNanos += System.nanoTime() - start;
+        queries++;
+        return result;
+    }
+
+    /**
+     * Updates the index after the given edges were inserted into the graph.
+     * Edges between vertices that were already connected leave the index untouched.
+     * @throws IllegalArgumentException if an edge does not belong to the indexed graph
+     */
+    public void edgesInserted(Iterable<Edge<E>> batch) throws IllegalArgumentException {
+        for (Edge<E> e : batch) {
+            Vertex<V>[] ends = graph.endVertices(e);
+            Integer a = component.get(ends[0]);
+            Integer b = component.get(ends[1]);
+            if (a == null || b == null) {          // an endpoint is newer than the index
+                rebuild();
+                continue;
+            }
+            addPending(a, b);
+            if (graph.getEdge(ends[1], ends[0]) == e)   // undirected edge, usable both ways
+                addPending(b, a);
+            if (pending.size() > maxPending)
+                rebuild();
+        }
+    }
+
+    /** Rebuilds the whole index from the current state of the graph. */
+    public void rebuild() {
+        long start = System.nanoTime();
+        int n = graph.numVertices();
+        component = new HashMap<>(2 * n);
+        List<Vertex<V>> verts = new ArrayList<>(n);
+        Map<Vertex<V>, Integer> index = new HashMap<>(2 * n);
+        for (Vertex<V> v : graph.vertices()) {
+            index.put(v, verts.size());
+            verts.add(v);
+        }
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] = offsets[i] + graph.outDegree(verts.get(i));
+        int[] targets = new int[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int k = offsets[i];
+            for (Edge<E> e : graph.outgoingEdges(verts.get(i)))
+                targets[k++] = index.get(graph.opposite(verts.get(i), e));
+        }
+
+        int[] comp = strongComponents(offsets, targets);
+        for (int i = 0; i < n; i++)
+            component.put(verts.get(i), comp[i]);
+        condense(offsets, targets, comp);
+        label();
+        visited = new int[numComponents];
+        stamp = 0;
+        stack = new int[Math.max(numComponents, 1)];
+        pending = new ArrayList<>();
+        buildNanos = System.nanoTime() - start;
+    }
+
+    /** Returns the time taken by the most recent (re)build, in nanoseconds. */
+    public long buildTimeNanos() { return buildNanos; }
+
+    /** Returns the number of strongly connected components of the indexed graph. */
+    public int numComponents() { return numComponents; }
+
+    /** Returns the approximate number of bytes held by the index, not counting the vertex map. */
+    public long indexSizeBytes() {
+        return 4L * (dagOffsets.length + dagTargets.length + low.length + post.length
+                + visited.length + stack.length) + 8L * pending.size();
+    }
+
+    /** Returns the number of queries answered since the last {@link #resetStatistics()}. */
+    public long queryCount() { return queries; }
+
+    /** Returns the number of queries the labels could not decide and that needed a search. */
+    public long fallbackCount() { return fallbacks; }
+
+    /** Returns the number of components visited by the fallback searches. */
+    public long fallbackVisits() { return fallbackVisits; }
+
+    /** Returns the mean latency of the queries, in nanoseconds. */
+    public double averageQueryNanos() { return queries == 0 ? 0.0 : (double) queryNanos / queries; }
+
+    /** Resets the query statistics. */
+    public void resetStatistics() {
+        queries = fallbacks = fallbackVisits = queryNanos = 0;
+    }
+
+    private int validate(Vertex<V> v) {
+        Integer c = component.get(v);
+        if (c == null) throw new IllegalArgumentException("Invalid vertex");
+        return c;
+    }
+
+    /** Adds an overlay edge between components a and b, unless a already reaches b. */
+    private void addPending(int a, int b) {
+        if (!reachable(a, b))
+            pending.add(new int[]{a, b});
+    }
+
+    /** Reachability between two components, taking the overlay edges into account. */
+    private boolean reachable(int cu, int cv) {
+        if (indexed(cu, cv))
+            return true;
+        if (pending.isEmpty())
+            return false;
+        // components reached so far through overlay edges; each overlay edge is used at most once
+        List<Integer> reached = new ArrayList<>();
+        reached.add(cu);
+        boolean[] used = new boolean[pending.size()];
+        for (int r = 0; r < reached.size(); r++) {
+            int from = reached.get(r);
+            for (int i = 0; i < used.length; i++) {
+                int[] edge = pending.get(i);
+                if (!used[i] && indexed(from, edge[0])) {
+                    used[i] = true;
+                    if (indexed(edge[1], cv))
+                        return true;
+                    reached.add(edge[1]);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Reachability between two components within the indexed DAG. */
+    private boolean indexed(int cu, int cv) {
+        if (cu == cv)
+            return true;
+        if (!mayReach(cu, cv))
+            return false;
+        // the labels cannot rule it out; search the DAG, pruning what the labels exclude
+        fallbacks++;
+        if (++stamp == 0) {
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+        int top = 0;
+        stack[top++] = cu;
+        visited[cu] = stamp;
+        while (top > 0) {
+            int c = stack[--top];
+            fallbackVisits++;
+            for (int k = dagOffsets[c]; k < dagOffsets[c + 1]; k++) {
+                int d = dagTargets[k];
+                if (d == cv)
+                    return true;
+                if (visited[d] != stamp && mayReach(d, cv)) {
+                    visited[d] = stamp;
+                    stack[top++] = d;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns false when the numbering or the labels prove that cu does not reach cv. */
+    private boolean mayReach(int cu, int cv) {
+        if (cu < cv)                               // components only reach smaller numbers
+            return false;
+        int bu = cu * numLabels, bv = cv * numLabels;
+        for (int i = 0; i < numLabels; i++)
+            if (low[bv + i] < low[bu + i] || post[bv + i] > post[bu + i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Computes the strongly connected components with an iterative version of Tarjan's algorithm.
+     * Components are numbered in the order they are completed, which is reverse topological order.
+     */
+    private int[] strongComponents(int[] offsets, int[] targets) {
+        int n = offsets.length - 1;
+        int[] comp = new int[n];
+        int[] order = new int[n];                  // discovery order, 0 when not yet discovered
+        int[] lowLink = new int[n];
+        int[] edgeCursor = new int[n];
+        int[] callStack = new int[n];
+        int[] sccStack = new int[n];
+        boolean[] onStack = new boolean[n];
+        int counter = 0, sccTop = 0, count = 0;
+        for (int s = 0; s < n; s++) {
+            if (order[s] != 0)
+                continue;
+            int top = 0;
+            callStack[top++] = s;
+            order[s] = lowLink[s] = ++counter;
+            edgeCursor[s] = offsets[s];
+            sccStack[sccTop++] = s;
+            onStack[s] = true;
+            while (top > 0) {
+                int v = callStack[top - 1];
+                if (edgeCursor[v] < offsets[v + 1]) {
+                    int w = targets[edgeCursor[v]++];
+                    if (order[w] == 0) {           // descend into w
+                        order[w] = lowLink[w] = ++counter;
+                        edgeCursor[w] = offsets[w];
+                        sccStack[sccTop++] = w;
+                        onStack[w] = true;
+                        callStack[top++] = w;
+                    } else if (onStack[w])
+                        lowLink[v] = Math.min(lowLink[v], order[w]);
+                } else {                           // v is finished
+                    top--;
+                    if (top > 0) {
+                        int parent = callStack[top - 1];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                    }
+                    if (lowLink[v] == order[v]) {  // v is the root of a component
+                        int w;
+                        do {
+                            w = sccStack[--sccTop];
+                            onStack[w] = false;
+                            comp[w] = count;
+                        } while (w != v);
+                        count++;
+                    }
+                }
+            }
+        }
+        numComponents = count;
+        return comp;
+    }
+
+    /** Builds the duplicate free edge lists of the condensed DAG. */
+    private void condense(int[] offsets, int[] targets, int[] comp) {
+        int n = comp.length;
+        int[] degree = new int[numComponents + 1];
+        for (int v = 0; v < n; v++)
+            for (int k = offsets[v]; k < offsets[v + 1]; k++)
+                if (comp[targets[k]] != comp[v])
+                    degree[comp[v] + 1]++;
+        for (int c = 0; c < numComponents; c++)
+            degree[c + 1] += degree[c];
+        int[] edges = new int[degree[numComponents]];
+        int[] fill = Arrays.copyOf(degree, numComponents);
+        for (int v = 0; v < n; v++)
+            for (int k = offsets[v]; k < offsets[v + 1]; k++)
+                if (comp[targets[k]] != comp[v])
+                    edges[fill[comp[v]]++] = comp[targets[k]];
+        dagOffsets = new int[numComponents + 1];
+        int size = 0;
+        for (int c = 0; c < numComponents; c++) {
+            Arrays.sort(edges, degree[c], degree[c + 1]);
+            for (int k = degree[c]; k < degree[c + 1]; k++)
+                if (size == dagOffsets[c] || edges[size - 1] != edges[k])
+                    edges[size++] = edges[k];
+            dagOffsets[c + 1] = size;
+        }
+        dagTargets = Arrays.copyOf(edges, size);
+    }
+
+    /** Assigns the interval labels, one randomized post-order traversal of the DAG per label. */
+    private void label() {
+        int c = numComponents;
+        low = new int[c * numLabels];
+        post = new int[c * numLabels];
+        int[] roots = new int[c];
+        for (int i = 0; i < c; i++)
+            roots[i] = i;
+        boolean[] done = new boolean[c];
+        int[] callStack = new int[c];
+        int[] start = new int[c];                  // random child to begin with
+        int[] seen = new int[c];                   // children examined so far
+        for (int l = 0; l < numLabels; l++) {
+            for (int i = c - 1; i > 0; i--) {      // shuffle the roots
+                int j = random.nextInt(i + 1);
+                int t = roots[i];
+                roots[i] = roots[j];
+                roots[j] = t;
+            }
+            Arrays.fill(done, false);
+            int rank = 0;
+            for (int r : roots) {
+                if (done[r])
+                    continue;
+                int top = 0;
+                callStack[top++] = r;
+                done[r] = true;
+                open(r, l, start, seen);
+                while (top > 0) {
+                    int v = callStack[top - 1];
+                    int degree = dagOffsets[v + 1] - dagOffsets[v];
+                    if (seen[v] < degree) {
+                        int w = dagTargets[dagOffsets[v] + (start[v] + seen[v]++) % degree];
+                        if (!done[w]) {
+                            done[w] = true;
+                            open(w, l, start, seen);
+                            callStack[top++] = w;
+                        } else
+                            low[v * numLabels + l] = Math.min(low[v * numLabels + l], low[w * numLabels + l]);
+                    } else {
+                        top--;
+                        int slot = v * numLabels + l;
+                        post[slot] = ++rank;
+                        low[slot] = Math.min(low[slot], rank);
+                        if (top > 0) {
+                            int parent = callStack[top - 1] * numLabels + l;
+                            low[parent] = Math.min(low[parent], low[slot]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Prepares component v for a visit of the traversal for label l. */
+    private void open(int v, int l, int[] start, int[] seen) {
+        int degree = dagOffsets[v + 1] - dagOffsets[v];
+        start[v] = degree == 0 ? 0 : random.nextInt(degree);
+        seen[v] = 0;
+        low[v * numLabels + l] = Integer.MAX_VALUE;
+    }
+
+    /** a main method to demonstrate the index */
+    public static void main(String[] args) {
+        AdjacencyMapGraph<String, String> graph =
+                new AdjacencyMapGraph<>(true);
+        Vertex<String> u = graph.insertVertex("u");
+        Vertex<String> v = graph.insertVertex("v");
+        Vertex<String> w = graph.insertVertex("w");
+        Vertex<String> z = graph.insertVertex("z");
+        graph.insertEdge(u, v, "e");
+        graph.insertEdge(v, w, "f");
+        graph.insertEdge(w, u, "g");
+        ReachabilityIndex<String, String> index = new ReachabilityIndex<>(graph);
+        System.out.println("u reaches w: " + index.reachable(u, w));
+        System.out.println("u reaches z: " + index.reachable(u, z));
+        List<Edge<String>> batch = new ArrayList<>();
+        batch.add(graph.insertEdge(w, z, "h"));
+        index.edgesInserted(batch);
+        System.out.println("u reaches z: " + index.reachable(u, z));
+        System.out.println("z reaches u: " + index.reachable(z, u));
+        System.out.println(index.numComponents() + " components, " + index.indexSizeBytes()
+                + " bytes, built in " + index.buildTimeNanos() + " ns");
+    }
+
+}
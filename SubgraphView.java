@@ -0,0 +1,291 @@
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * A read-only view of the part of a graph selected by a vertex and an edge predicate.
+ *
+ * The view holds no copy of the graph: every query is answered by the underlying graph, and
+ * the vertices and edges it returns are filtered on the fly while they are iterated. A vertex
+ * belongs to the view if it passes the vertex predicate; an edge belongs to it if it passes the
+ * edge predicate and both its endpoints belong to the view. The vertex predicate therefore runs
+ * for the far endpoint of every edge visited, so an expensive one is best evaluated once into a
+ * BitSet over vertex ids, see {@link #masked}. Traversals such as
+ * {@link GraphTraversal#BFSComplete} run on the view like on any other graph.
+ *
+ * Changes to the underlying graph show through the view. Counting the vertices or edges of a
+ * view takes a pass over those of the graph. Every mutator throws an UnsupportedOperationException.
+ */
+public class SubgraphView<V,E> implements Graph<V,E> {
+
+    private final Graph<V,E> graph;
+    private final Predicate<? super Vertex<V>> vertexFilter;
+    private final Predicate<? super Edge<E>> edgeFilter;
+
+    /**
+     * Constructs a view of g.
+     *
+     * @param g Graph instance
+     * @param vertexFilter selects the vertices of the view
+     * @param edgeFilter selects the edges of the view among those between its vertices
+     */
+    public SubgraphView(Graph<V,E> g, Predicate<? super Vertex<V>> vertexFilter,
+                        Predicate<? super Edge<E>> edgeFilter) {
+        this.graph = g;
+        this.vertexFilter = vertexFilter;
+        this.edgeFilter = edgeFilter;
+    }
+
+    /** Returns the subgraph of g induced by the vertices passing the filter. */
+    public static <V,E> SubgraphView<V,E> induced(Graph<V,E> g, Predicate<? super Vertex<V>> vertexFilter) {
+        return new SubgraphView<>(g, vertexFilter, e -> true);
+    }
+
+    /** Returns the view of g with all its vertices and the edges passing the filter. */
+    public static <V,E> SubgraphView<V,E> edgeFiltered(Graph<V,E> g, Predicate<? super Edge<E>> edgeFilter) {
+        return new SubgraphView<>(g, v -> true, edgeFilter);
+    }
+
+    /**
+     * Returns a view of g whose vertices are given by a mask over vertex ids, such as the ids of
+     * a {@link CompressedGraph}. Testing a vertex then costs a single bit lookup.
+     *
+     * @param g Graph instance
+     * @param id the id of a vertex of g, a non-negative int
+     * @param vertexMask the ids of the vertices of the view
+     * @param edgeFilter selects the edges of the view among those between its vertices
+     */
+    public static <V,E> SubgraphView<V,E> masked(Graph<V,E> g, ToIntFunction<? super Vertex<V>> id,
+                                                BitSet vertexMask, Predicate<? super Edge<E>> edgeFilter) {
+        return new SubgraphView<>(g, v -> vertexMask.get(id.applyAsInt(v)), edgeFilter);
+    }
+
+    /** Returns the ids of the vertices of g passing the filter, for {@link #masked}. */
+    public static <V,E> BitSet mask(Graph<V,E> g, ToIntFunction<? super Vertex<V>> id,
+                                    Predicate<? super Vertex<V>> vertexFilter) {
+        BitSet mask = new BitSet(g.numVertices());
+        for (Vertex<V> v : g.vertices())
+            if (vertexFilter.test(v))
+                mask.set(id.applyAsInt(v));
+        return mask;
+    }
+
+    /** Returns the underlying graph. */
+    public Graph<V,E> graph() { return graph; }
+
+    /** Returns whether vertex v of the underlying graph belongs to the view. */
+    public boolean contains(Vertex<V> v) { return vertexFilter.test(v); }
+
+    /** Returns whether edge e of the underlying graph belongs to the view. */
+    public boolean contains(Edge<E> e) {
+        if (!edgeFilter.test(e))
+            return false;
+        Vertex<V>[] ends = graph.endVertices(e);
+        return vertexFilter.test(ends[0]) && vertexFilter.test(ends[1]);
+    }
+
+    /** Returns the number of vertices of the view; this counts them. */
+    public int numVertices() {
+        int count = 0;
+        for (Vertex<V> v : graph.vertices())
+            if (vertexFilter.test(v))
+                count++;
+        return count;
+    }
+
+    /** Returns the number of edges of the view; this counts them. */
+    public int numEdges() {
+        int count = 0;
+        for (Edge<E> e : graph.edges())
+            if (contains(e))
+                count++;
+        return count;
+    }
+
+    /** Returns the vertices of the view as an iterable collection */
+    public Iterable<Vertex<V>> vertices() { return new Filtered<>(graph.vertices(), vertexFilter); }
+
+    /** Returns the edges of the view as an iterable collection */
+    public Iterable<Edge<E>> edges() { return new Filtered<>(graph.edges(), this::contains); }
+
+    /**
+     * Returns the number of edges of the view leaving vertex v.
+     * @throws IllegalArgumentException if v is not a vertex of the view
+     */
+    public int outDegree(Vertex<V> v) throws IllegalArgumentException {
+        int count = 0;
+        for (Edge<E> e : outgoingEdges(v))
+            count++;
+        return count;
+    }
+
+    /**
+     * Returns the number of edges of the view for which vertex v is the destination.
+     * @throws IllegalArgumentException if v is not a vertex of the view
+     */
+    public int inDegree(Vertex<V> v) throws IllegalArgumentException {
+        int count = 0;
+        for (Edge<E> e : incomingEdges(v))
+            count++;
+        return count;
+    }
+
+    /**
+     * Returns an iterable collection of the edges of the view for which vertex v is the origin.
+     * @throws IllegalArgumentException if v is not a vertex of the view
+     */
+    public Iterable<Edge<E>> outgoingEdges(Vertex<V> v) throws IllegalArgumentException {
+        return new Filtered<>(graph.outgoingEdges(validate(v)), e -> adjacent(v, e));
+    }
+
+    /**
+     * Returns an iterable collection of the edges of the view for which vertex v is the destination.
+     * @throws IllegalArgumentException if v is not a vertex of the view
+     */
+    public Iterable<Edge<E>> incomingEdges(Vertex<V> v) throws IllegalArgumentException {
+        return new Filtered<>(graph.incomingEdges(validate(v)), e -> adjacent(v, e));
+    }
+
+    /** Returns the edge of the view from u to v, or null if they are not adjacent in the view. */
+    public Edge<E> getEdge(Vertex<V> u, Vertex<V> v) throws IllegalArgumentException {
+        Edge<E> e = graph.getEdge(validate(u), validate(v));
+        return e != null && edgeFilter.test(e) ? e : null;
+    }
+
+    /**
+     * Returns the vertices of edge e as an array of length two.
+     * @throws IllegalArgumentException if e is not an edge of the view
+     */
+    public Vertex<V>[] endVertices(Edge<E> e) throws IllegalArgumentException {
+        if (!contains(e)) throw new IllegalArgumentException("Edge is not in the view");
+        return graph.endVertices(e);
+    }
+
+    /**
+     * Returns the vertex that is opposite vertex v on edge e.
+     * This is answered by the underlying graph, without checking that e belongs to the view.
+     */
+    public Vertex<V> opposite(Vertex<V> v, Edge<E> e) throws IllegalArgumentException {
+        return graph.opposite(v, e);
+    }
+
+    /** Unsupported, the view is read-only. */
+    public Vertex<V> insertVertex(V element) {
+        throw new UnsupportedOperationException("SubgraphView is read-only");
+    }
+
+    /** Unsupported, the view is read-only. */
+    public Edge<E> insertEdge(Vertex<V> u, Vertex<V> v, E element) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("SubgraphView is read-only");
+    }
+
+    /** Unsupported, the view is read-only. */
+    public void removeVertex(Vertex<V> v) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("SubgraphView is read-only");
+    }
+
+    /** Unsupported, the view is read-only. */
+    public void removeEdge(Edge<E> e) throws IllegalArgumentException {
+        throw new UnsupportedOperationException("SubgraphView is read-only");
+    }
+
+    /** Returns whether e, an edge of the graph at v, belongs to the view; v is known to. */
+    private boolean adjacent(Vertex<V> v, Edge<E> e) {
+        return edgeFilter.test(e) && vertexFilter.test(graph.opposite(v, e));
+    }
+
+    private Vertex<V> validate(Vertex<V> v) {
+        if (!vertexFilter.test(v)) throw new IllegalArgumentException("Vertex is not in the view");
+        return v;
+    }
+
+    //---------------- nested Filtered class ----------------
+    /** The elements of an iterable passing a predicate, found while iterating. */
+    private static class Filtered<T> implements Iterable<T> {
+        private final Iterable<T> source;
+        private final Predicate<? super T> filter;
+
+        public Filtered(Iterable<T> source, Predicate<? super T> filter) {
+            this.source = source;
+            this.filter = filter;
+        }
+
+        public Iterator<T> iterator() {
+            Iterator<T> it = source.iterator();
+            return new Iterator<T>() {
+                private T pending = advance();
+
+                private T advance() {
+                    while (it.hasNext()) {
+                        T next = it.next();
+                        if (filter.test(next))
+                            return next;
+                    }
+                    return null;
+                }
+
+                public boolean hasNext() { return pending != null; }
+
+                public T next() {
+                    if (pending == null) throw new NoSuchElementException();
+                    T next = pending;
+                    pending = advance();
+                    return next;
+                }
+            };
+        }
+    }  //------------ end of Filtered class ------------
+
+    /** a main method to demonstrate traversals on views against copying the subgraph */
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        AdjacencyMapGraph<Integer, Integer> graph = new AdjacencyMapGraph<>(false);
+        @SuppressWarnings({"unchecked"})
+        Vertex<Integer>[] grid = (Vertex<Integer>[]) new Vertex[side * side];
+        for (int i = 0; i < grid.length; i++)
+            grid[i] = graph.insertVertex(i);
+        for (int r = 0; r < side; r++)
+            for (int c = 0; c < side; c++) {
+                int i = r * side + c;              // edge elements act as timestamps
+                if (c + 1 < side) graph.insertEdge(grid[i], grid[i + 1], (7 * i) % 100);
+                if (r + 1 < side) graph.insertEdge(grid[i], grid[i + side], (7 * i + 3) % 100);
+            }
+        Predicate<Edge<Integer>> window = e -> e.getElement() >= 20 && e.getElement() < 90;
+        Predicate<Vertex<Integer>> tenant = v -> v.getElement() % side < side / 2;
+
+        long start = System.nanoTime();
+        AdjacencyMapGraph<Integer, Integer> copy = new AdjacencyMapGraph<>(false);
+        Map<Vertex<Integer>, Vertex<Integer>> image = new HashMap<>();
+        for (Vertex<Integer> v : graph.vertices())
+            if (tenant.test(v))
+                image.put(v, copy.insertVertex(v.getElement()));
+        for (Edge<Integer> e : graph.edges()) {
+            Vertex<Integer>[] ends = graph.endVertices(e);
+            if (window.test(e) && image.containsKey(ends[0]) && image.containsKey(ends[1]))
+                copy.insertEdge(image.get(ends[0]), image.get(ends[1]), e.getElement());
+        }
+        long copied = System.nanoTime();
+        int fromCopy = GraphTraversal.BFSComplete(copy).size();
+        long copyEnd = System.nanoTime();
+        System.out.printf("copy: %d tree edges, %.1f ms copying + %.1f ms BFS%n",
+                fromCopy, (copied - start) / 1e6, (copyEnd - copied) / 1e6);
+
+        SubgraphView<Integer, Integer> view = new SubgraphView<>(graph, tenant, window);
+        start = System.nanoTime();
+        int fromView = GraphTraversal.BFSComplete(view).size();
+        System.out.printf("view: %d tree edges, %.1f ms BFS%n", fromView, (System.nanoTime() - start) / 1e6);
+
+        CompressedGraph<Integer, Integer> compressed = CompressedGraph.copyOf(graph, false);
+        BitSet mask = mask(compressed, compressed::id, tenant);
+        SubgraphView<Integer, Integer> masked = masked(compressed, compressed::id, mask, window);
+        start = System.nanoTime();
+        int fromMasked = GraphTraversal.BFSComplete(masked).size();
+        System.out.printf("masked view of a compressed graph: %d tree edges, %.1f ms BFS%n",
+                fromMasked, (System.nanoTime() - start) / 1e6);
+    }
+
+}
@@ -0,0 +1,354 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Counts triangles and clustering coefficients of a graph.
+ *
+ * Edges are treated as undirected; self loops and parallel edges between the
+ * same pair of vertices are ignored. Every edge is oriented from the endpoint of
+ * lower degree rank to the endpoint of higher rank, so each vertex only keeps
+ * a sorted array of its higher ranked neighbors. Those arrays hold every edge once
+ * and none of them is longer than O(sqrt(m)), which keeps hubs of a heavy-tailed
+ * degree distribution cheap. Each triangle is then found exactly once by
+ * intersecting the arrays of the two lower ranked corners.
+ *
+ * The third corner of most triangles is a hub, one of the vertices of highest rank, so
+ * every task credits the triangles of the HOT_RANKS highest ranked vertices to a private
+ * array, summed at the end, and only the counts of the other vertices, which are rarely
+ * contended, are shared. That bounds the private counts at 8 * HOT_RANKS bytes per task,
+ * whatever the size of the graph.
+ */
+public class TriangleCounter {
+
+    /** Size ratio above which the intersection gallops through the longer array. */
+    private static final int GALLOP_RATIO = 32;
+
+    /** Number of consecutive ranks a task claims at a time. */
+    private static final int BLOCK = 256;
+
+    /** Number of highest ranked vertices whose counts every task keeps privately. */
+    private static final int HOT_RANKS = 1 << 16;
+
+    /**
+     * Counts the triangles of Graph g, using all available processors.
+     *
+     * @param g Graph instance
+     * @return the global and per-vertex triangle counts of g
+     */
+    public static <V,E> Result<V> count(Graph<V,E> g) {
+        return count(g, true);
+    }
+
+    /**
+     * Counts the triangles of Graph g.
+     *
+     * @param g Graph instance
+     * @param parallel whether the intersections are spread over the common fork-join pool
+     * @return the global and per-vertex triangle counts of g
+     */
+    @SuppressWarnings({"unchecked"})
+    public static <V,E> Result<V> count(Graph<V,E> g, boolean parallel) {
+        int n = g.numVertices();
+        Vertex<V>[] verts = (Vertex<V>[]) new Vertex[n];
+        Map<Vertex<V>, Integer> index = new HashMap<>(2 * n);
+        int k = 0;
+        for (Vertex<V> v : g.vertices()) {
+            verts[k] = v;
+            index.put(v, k++);
+        }
+
+        int[][] neighbors = undirectedNeighbors(g, verts, index);
+        int[] degree = new int[n];
+        for (int v = 0; v < n; v++)
+            degree[v] = neighbors[v].length;
+
+        // rank[v] is the position of v when vertices are sorted by ascending degree, then index
+        long[] byDegree = new long[n];
+        for (int v = 0; v < n; v++)
+            byDegree[v] = ((long) degree[v] << 32) | v;
+        Arrays.sort(byDegree);
+        int[] rank = new int[n];
+        for (int r = 0; r < n; r++)
+            rank[(int) byDegree[r]] = r;
+        byDegree = null;
+
+        // higher[r] holds the ranks of the higher ranked neighbors of the vertex of rank r, sorted
+        int[][] higher = new int[n][];
+        for (int v = 0; v < n; v++) {
+            int[] nbrs = neighbors[v];
+            int count = 0;
+            for (int w : nbrs)
+                if (rank[w] > rank[v])
+                    count++;
+            int[] out = new int[count];
+            count = 0;
+            for (int w : nbrs)
+                if (rank[w] > rank[v])
+                    out[count++] = rank[w];
+            Arrays.sort(out);
+            higher[rank[v]] = out;
+            neighbors[v] = null;                   // only the higher ranked neighbors are needed from here
+        }
+
+        int tasks = parallel ? Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), (n + BLOCK - 1) / BLOCK)) : 1;
+        int hot = n - Math.min(n, HOT_RANKS);      // first rank counted privately
+        AtomicLongArray shared = new AtomicLongArray(hot);
+        AtomicInteger nextBlock = new AtomicInteger();
+        IntStream workers = IntStream.range(0, tasks);
+        if (parallel)
+            workers = workers.parallel();
+        long[][] partial = workers.mapToObj(t -> {
+            Counts counts = new Counts(shared, hot, n);
+            for (int start = nextBlock.getAndAdd(BLOCK); start < n; start = nextBlock.getAndAdd(BLOCK))
+                for (int u = start, end = Math.min(start + BLOCK, n); u < end; u++) {
+                    long found = 0;
+                    int[] hu = higher[u];
+                    for (int v : hu) {
+                        long c = intersect(hu, higher[v], counts);
+                        counts.add(v, c);
+                        found += c;
+                    }
+                    counts.add(u, found);
+                }
+            return counts.local;
+        }).toArray(long[][]::new);
+        Arrays.fill(higher, null);
+        long[] triangles = new long[n];            // by vertex index
+        long corners = 0;
+        for (int v = 0; v < n; v++) {
+            int r = rank[v];
+            long c = r < hot ? shared.get(r) : 0;
+            if (r >= hot)
+                for (long[] local : partial)
+                    c += local[r - hot];
+            triangles[v] = c;
+            corners += c;
+        }
+        return new Result<>(corners / 3, index, triangles, degree);
+    }
+
+    /**
+     * Returns, for every vertex index, the sorted and duplicate free indices of its
+     * neighbors when the direction of the edges is ignored.
+     */
+    private static <V,E> int[][] undirectedNeighbors(
+            Graph<V,E> g,
+            Vertex<V>[] verts,
+            Map<Vertex<V>, Integer> index
+    ) {
+        int n = verts.length;
+        int[] degree = new int[n];
+        for (Edge<E> e : g.edges()) {
+            Vertex<V>[] ends = g.endVertices(e);
+            int a = index.get(ends[0]);
+            int b = index.get(ends[1]);
+            if (a != b) {
+                degree[a]++;
+                degree[b]++;
+            }
+        }
+        int[][] adj = new int[n][];
+        for (int v = 0; v < n; v++)
+            adj[v] = new int[degree[v]];
+        int[] fill = new int[n];
+        for (Edge<E> e : g.edges()) {
+            Vertex<V>[] ends = g.endVertices(e);
+            int a = index.get(ends[0]);
+            int b = index.get(ends[1]);
+            if (a != b) {
+                adj[a][fill[a]++] = b;
+                adj[b][fill[b]++] = a;
+            }
+        }
+        // a directed graph may hold both u->v and v->u; keep that pair once
+        for (int v = 0; v < n; v++) {
+            int[] nbrs = adj[v];
+            Arrays.sort(nbrs);
+            int size = 0;
+            for (int i = 0; i < nbrs.length; i++)
+                if (size == 0 || nbrs[size - 1] != nbrs[i])
+                    nbrs[size++] = nbrs[i];
+            if (size < nbrs.length)
+                adj[v] = Arrays.copyOf(nbrs, size);
+        }
+        return adj;
+    }
+
+    /**
+     * Counts the common entries of two sorted arrays and credits each of them with one triangle.
+     * Uses a linear merge when the arrays have similar lengths and galloping search otherwise.
+     */
+    private static long intersect(int[] a, int[] b, Counts perRank) {
+        if (a.length > b.length) {
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        if (a.length == 0)
+            return 0;
+        long count = 0;
+        if ((long) a.length * GALLOP_RATIO < b.length) {
+            int lo = 0;
+            for (int x : a) {
+                lo = gallop(b, lo, x);
+                if (lo == b.length)
+                    break;
+                if (b[lo] == x) {
+                    perRank.add(x, 1);
+                    count++;
+                    lo++;
+                }
+            }
+        } else {
+            int i = 0, j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j])
+                    i++;
+                else if (a[i] > b[j])
+                    j++;
+                else {
+                    perRank.add(a[i], 1);
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Returns the first index at or after lo whose entry of sorted array b is not less than x. */
+    private static int gallop(int[] b, int lo, int x) {
+        int step = 1;
+        int hi = lo;
+        while (hi < b.length && b[hi] < x) {
+            lo = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        hi = Math.min(hi, b.length);
+        while (lo < hi) {                          // b[lo-1] < x <= b[hi], binary search in between
+            int mid = (lo + hi) >>> 1;
+            if (b[mid] < x)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    //---------------- nested Counts class ----------------
+    /** The triangle counts of one task: private for the hot ranks, shared for the others. */
+    private static class Counts {
+        private final AtomicLongArray shared;
+        private final int hot;
+        private final long[] local;
+
+        public Counts(AtomicLongArray shared, int hot, int n) {
+            this.shared = shared;
+            this.hot = hot;
+            this.local = new long[n - hot];
+        }
+
+        /** Credits the vertex of rank r with c triangles. */
+        public void add(int r, long c) {
+            if (r >= hot)
+                local[r - hot] += c;
+            else if (c != 0)
+                shared.addAndGet(r, c);
+        }
+    }  //------------ end of Counts class ------------
+
+    //---------------- nested Result class ----------------
+    /** The triangle counts of a graph together with the clustering coefficients derived from them. */
+    public static class Result<V> {
+        private final long total;
+        private final Map<Vertex<V>, Integer> index;   // vertex -> index into the arrays
+        private final long[] triangles;
+        private final int[] degrees;
+
+        private Result(long total, Map<Vertex<V>, Integer> index, long[] triangles, int[] degrees) {
+            this.total = total;
+            this.index = index;
+            this.triangles = triangles;
+            this.degrees = degrees;
+        }
+
+        /** Returns the number of triangles in the graph. */
+        public long globalCount() { return total; }
+
+        /**
+         * Returns the number of triangles that vertex v is a corner of.
+         * @throws IllegalArgumentException if v was not a vertex of the counted graph
+         */
+        public long triangles(Vertex<V> v) throws IllegalArgumentException {
+            return triangles[validate(v)];
+        }
+
+        /**
+         * Returns the local clustering coefficient of vertex v, the fraction of pairs of
+         * neighbors of v that are adjacent themselves (0 for vertices with fewer than two neighbors).
+         * @throws IllegalArgumentException if v was not a vertex of the counted graph
+         */
+        public double clusteringCoefficient(Vertex<V> v) throws IllegalArgumentException {
+            return coefficient(validate(v));
+        }
+
+        /** Returns the mean of the local clustering coefficients over all vertices. */
+        public double averageClusteringCoefficient() {
+            if (triangles.length == 0)
+                return 0.0;
+            double sum = 0.0;
+            for (int i = 0; i < triangles.length; i++)
+                sum += coefficient(i);
+            return sum / triangles.length;
+        }
+
+        /** Returns the transitivity of the graph, three times the triangles over the number of wedges. */
+        public double globalClusteringCoefficient() {
+            long wedges = 0;
+            for (int d : degrees)
+                wedges += (long) d * (d - 1) / 2;
+            return wedges == 0 ? 0.0 : 3.0 * total / wedges;
+        }
+
+        private double coefficient(int i) {
+            long d = degrees[i];
+            return d < 2 ? 0.0 : 2.0 * triangles[i] / (d * (d - 1));
+        }
+
+        private int validate(Vertex<V> v) throws IllegalArgumentException {
+            Integer i = index.get(v);
+            if (i == null) throw new IllegalArgumentException("Invalid vertex");
+            return i;
+        }
+    }  //------------ end of Result class ------------
+
+
+    /** a main method to demonstrate the algorithm */
+    public static void main(String[] args) {
+        AdjacencyMapGraph<String, String> graph =
+                new AdjacencyMapGraph<>(false);
+        Vertex<String> u = graph.insertVertex("u");
+        Vertex<String> v = graph.insertVertex("v");
+        Vertex<String> w = graph.insertVertex("w");
+        Vertex<String> z = graph.insertVertex("z");
+        graph.insertEdge(u, v, "e");
+        graph.insertEdge(u, w, "g");
+        graph.insertEdge(v, w, "f");
+        graph.insertEdge(w, z, "h");
+        graph.insertEdge(v, z, "i");
+        Result<String> result = count(graph);
+        System.out.println("triangles: " + result.globalCount());
+        for (Vertex<String> k : graph.vertices())
+            System.out.println(k.getElement() + ": " + result.triangles(k)
+                    + " triangles, clustering " + result.clusteringCoefficient(k));
+        System.out.println("transitivity: " + result.globalClusteringCoefficient());
+    }
+
+}
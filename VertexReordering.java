@@ -0,0 +1,295 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Vertex orderings that place vertices close to their neighbors.
+ *
+ * Every ordering is a permutation of the vertex numbers 0..n-1, where the old number of a
+ * vertex is its position in the iteration order of {@code g.vertices()}. The direction of
+ * the edges is ignored when neighbors are looked up. {@link #rebuild} copies a graph with its
+ * vertices and edges inserted in the new order, so that traversals of the copy walk memory
+ * in roughly the order it was allocated in.
+ */
+public class VertexReordering {
+
+    /** Returns the ordering that keeps every vertex at its old number. */
+    public static <V,E> Ordering<V> insertionOrder(Graph<V,E> g) {
+        Ordering<V> o = new Ordering<>(g);
+        int[] order = new int[o.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        o.setOrder(order);
+        return o;
+    }
+
+    /**
+     * Returns the reverse Cuthill-McKee ordering of Graph g. Each connected component is
+     * explored breadth first from one of its vertices of least degree, neighbors being visited
+     * in order of increasing degree, and the resulting order is reversed.
+     */
+    public static <V,E> Ordering<V> reverseCuthillMcKee(Graph<V,E> g) {
+        Ordering<V> o = new Ordering<>(g);
+        int[][] adj = neighbors(g, o);
+        int n = adj.length;
+        Integer[] byDegree = byDegree(adj, true);
+        for (int[] nbrs : adj)
+            sortByDegree(nbrs, adj);
+        int[] order = new int[n];
+        boolean[] known = new boolean[n];
+        int size = 0;
+        for (int s : byDegree) {
+            if (known[s])
+                continue;
+            known[s] = true;
+            order[size++] = s;
+            for (int head = size - 1; head < size; head++)   // order doubles as the BFS queue
+                for (int w : adj[order[head]])
+                    if (!known[w]) {
+                        known[w] = true;
+                        order[size++] = w;
+                    }
+        }
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        o.setOrder(order);
+        return o;
+    }
+
+    /** Returns the ordering of the vertices of Graph g by decreasing degree, hubs first. */
+    public static <V,E> Ordering<V> degreeDescending(Graph<V,E> g) {
+        Ordering<V> o = new Ordering<>(g);
+        int[][] adj = neighbors(g, o);
+        Integer[] byDegree = byDegree(adj, false);
+        int[] order = new int[adj.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = byDegree[i];
+        o.setOrder(order);
+        return o;
+    }
+
+    /**
+     * Returns the order in which a breadth-first search of the entire Graph g discovers its
+     * vertices, starting a new search from the first undiscovered vertex in the old order.
+     */
+    public static <V,E> Ordering<V> breadthFirst(Graph<V,E> g) {
+        Ordering<V> o = new Ordering<>(g);
+        int[][] adj = neighbors(g, o);
+        int n = adj.length;
+        int[] order = new int[n];
+        boolean[] known = new boolean[n];
+        int size = 0;
+        for (int s = 0; s < n; s++) {
+            if (known[s])
+                continue;
+            known[s] = true;
+            order[size++] = s;
+            for (int head = size - 1; head < size; head++)
+                for (int w : adj[order[head]])
+                    if (!known[w]) {
+                        known[w] = true;
+                        order[size++] = w;
+                    }
+        }
+        o.setOrder(order);
+        return o;
+    }
+
+    /**
+     * Returns a copy of Graph g whose vertices and edges are inserted in the given order.
+     * The i-th vertex of the copy corresponds to {@code ordering.vertex(i)}, and the outgoing
+     * edges of each vertex are inserted by increasing new number of their opposite vertex.
+     *
+     * @param g Graph instance the ordering was computed for
+     * @param ordering the new order of the vertices
+     * @param directed whether g (and thus the copy) is directed
+     */
+    @SuppressWarnings({"unchecked"})
+    public static <V,E> AdjacencyMapGraph<V,E> rebuild(Graph<V,E> g, Ordering<V> ordering, boolean directed) {
+        int n = ordering.size();
+        AdjacencyMapGraph<V,E> result = new AdjacencyMapGraph<>(directed);
+        Vertex<V>[] copy = (Vertex<V>[]) new Vertex[n];
+        for (int i = 0; i < n; i++)
+            copy[i] = result.insertVertex(ordering.vertex(i).getElement());
+        for (int i = 0; i < n; i++) {
+            Vertex<V> u = ordering.vertex(i);
+            long[] keyed = new long[g.outDegree(u)];           // new number of opposite in the high bits
+            Edge<E>[] out = (Edge<E>[]) new Edge[keyed.length];
+            int k = 0;
+            for (Edge<E> e : g.outgoingEdges(u)) {
+                out[k] = e;
+                keyed[k] = ((long) ordering.newIndex(g.opposite(u, e)) << 32) | k;
+                k++;
+            }
+            Arrays.sort(keyed);
+            for (long key : keyed) {
+                Edge<E> e = out[(int) key];
+                int j = (int) (key >>> 32);
+                if (directed || j >= i)                        // an undirected edge is listed at both ends
+                    result.insertEdge(copy[i], copy[j], e.getElement());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the mean distance between the new numbers of the two endpoints of an edge of g.
+     * Smaller values mean that neighbors are stored closer to each other.
+     */
+    public static <V,E> double averageGap(Graph<V,E> g, Ordering<V> ordering) {
+        long sum = 0;
+        int m = 0;
+        for (Edge<E> e : g.edges()) {
+            Vertex<V>[] ends = g.endVertices(e);
+            sum += Math.abs(ordering.newIndex(ends[0]) - ordering.newIndex(ends[1]));
+            m++;
+        }
+        return m == 0 ? 0.0 : (double) sum / m;
+    }
+
+    /**
+     * Returns the fraction of edges of g whose endpoints are numbered less than window apart,
+     * a proxy for the share of neighbor accesses that stay within the same cache lines.
+     */
+    public static <V,E> double localFraction(Graph<V,E> g, Ordering<V> ordering, int window) {
+        int local = 0, m = 0;
+        for (Edge<E> e : g.edges()) {
+            Vertex<V>[] ends = g.endVertices(e);
+            if (Math.abs(ordering.newIndex(ends[0]) - ordering.newIndex(ends[1])) < window)
+                local++;
+            m++;
+        }
+        return m == 0 ? 0.0 : (double) local / m;
+    }
+
+    /** Returns the duplicate free neighbor numbers of every vertex, ignoring edge directions. */
+    private static <V,E> int[][] neighbors(Graph<V,E> g, Ordering<V> o) {
+        int n = o.size();
+        int[] degree = new int[n];
+        for (Edge<E> e : g.edges()) {
+            Vertex<V>[] ends = g.endVertices(e);
+            degree[o.oldIndex(ends[0])]++;
+            degree[o.oldIndex(ends[1])]++;
+        }
+        int[][] adj = new int[n][];
+        for (int v = 0; v < n; v++)
+            adj[v] = new int[degree[v]];
+        int[] fill = new int[n];
+        for (Edge<E> e : g.edges()) {
+            Vertex<V>[] ends = g.endVertices(e);
+            int a = o.oldIndex(ends[0]), b = o.oldIndex(ends[1]);
+            adj[a][fill[a]++] = b;
+            adj[b][fill[b]++] = a;
+        }
+        for (int v = 0; v < n; v++) {
+            int[] nbrs = adj[v];
+            Arrays.sort(nbrs);
+            int size = 0;
+            for (int i = 0; i < nbrs.length; i++)
+                if (nbrs[i] != v && (size == 0 || nbrs[size - 1] != nbrs[i]))
+                    nbrs[size++] = nbrs[i];
+            if (size < nbrs.length)
+                adj[v] = Arrays.copyOf(nbrs, size);
+        }
+        return adj;
+    }
+
+    /** Returns the vertex numbers sorted by degree, ties keeping their old order. */
+    private static Integer[] byDegree(int[][] adj, boolean ascending) {
+        Integer[] order = new Integer[adj.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> ascending
+                ? Integer.compare(adj[a].length, adj[b].length)
+                : Integer.compare(adj[b].length, adj[a].length));
+        return order;
+    }
+
+    /** Sorts a neighbor array by increasing degree of the neighbors. */
+    private static void sortByDegree(int[] nbrs, int[][] adj) {
+        long[] keyed = new long[nbrs.length];
+        for (int i = 0; i < nbrs.length; i++)
+            keyed[i] = ((long) adj[nbrs[i]].length << 32) | nbrs[i];
+        Arrays.sort(keyed);
+        for (int i = 0; i < nbrs.length; i++)
+            nbrs[i] = (int) keyed[i];
+    }
+
+    //---------------- nested Ordering class ----------------
+    /** A permutation of the vertices of a graph, with mapping arrays in both directions. */
+    public static class Ordering<V> {
+        private final Vertex<V>[] vertices;            // old number -> vertex
+        private final Map<Vertex<V>, Integer> oldIndex;
+        private int[] newToOld, oldToNew;
+
+        @SuppressWarnings({"unchecked"})
+        private <E> Ordering(Graph<V,E> g) {
+            int n = g.numVertices();
+            vertices = (Vertex<V>[]) new Vertex[n];
+            oldIndex = new HashMap<>(2 * n);
+            int k = 0;
+            for (Vertex<V> v : g.vertices()) {
+                vertices[k] = v;
+                oldIndex.put(v, k++);
+            }
+        }
+
+        private void setOrder(int[] order) {
+            newToOld = order;
+            oldToNew = new int[order.length];
+            for (int i = 0; i < order.length; i++)
+                oldToNew[order[i]] = i;
+        }
+
+        /** Returns the number of vertices. */
+        public int size() { return vertices.length; }
+
+        /** Returns the vertex with the given new number. */
+        public Vertex<V> vertex(int newIndex) { return vertices[newToOld[newIndex]]; }
+
+        /**
+         * Returns the new number of vertex v.
+         * @throws IllegalArgumentException if v was not a vertex of the ordered graph
+         */
+        public int newIndex(Vertex<V> v) throws IllegalArgumentException {
+            return oldToNew[oldIndex(v)];
+        }
+
+        /** Returns a copy of the array mapping new numbers to old numbers. */
+        public int[] newToOld() { return newToOld.clone(); }
+
+        /** Returns a copy of the array mapping old numbers to new numbers. */
+        public int[] oldToNew() { return oldToNew.clone(); }
+
+        private int oldIndex(Vertex<V> v) {
+            Integer i = oldIndex.get(v);
+            if (i == null) throw new IllegalArgumentException("Invalid vertex");
+            return i;
+        }
+    }  //------------ end of Ordering class ------------
+
+
+    /** a main method to demonstrate the orderings */
+    public static void main(String[] args) {
+        AdjacencyMapGraph<String, String> graph =
+                new AdjacencyMapGraph<>(false);
+        Vertex<String> u = graph.insertVertex("u");
+        Vertex<String> v = graph.insertVertex("v");
+        Vertex<String> w = graph.insertVertex("w");
+        Vertex<String> z = graph.insertVertex("z");
+        graph.insertEdge(u, z, "e");
+        graph.insertEdge(z, w, "g");
+        graph.insertEdge(w, v, "f");
+        Ordering<String> rcm = reverseCuthillMcKee(graph);
+        System.out.print("RCM order:");
+        for (int i = 0; i < rcm.size(); i++)
+            System.out.print(" " + rcm.vertex(i).getElement());
+        System.out.println();
+        System.out.println("average gap: " + averageGap(graph, rcm));
+        System.out.println(rebuild(graph, rcm, false));
+    }
+
+}